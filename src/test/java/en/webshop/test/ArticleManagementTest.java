@@ -14,7 +14,6 @@ import javax.ejb.EJB;
 import javax.security.auth.login.LoginException;
 
 import org.jboss.arquillian.api.Deployment;
-import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.security.client.SecurityClient;
 import org.jboss.security.client.SecurityClientFactory;
 import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
@@ -35,13 +34,19 @@ import en.webshop.articleManagement.service.AttributeNotFoundException;
 import en.webshop.articleManagement.service.CategoryNotFoundException;
 import en.webshop.test.util.ArchiveUtil;
 import en.webshop.test.util.DbReloadProvider;
+import en.webshop.test.util.JdbcLimit;
+import en.webshop.test.util.JdbcStatisticsRule;
+import en.webshop.test.util.SuiteArquillian;
 
-@RunWith(Arquillian.class)
+@RunWith(SuiteArquillian.class)
 public class ArticleManagementTest {
 
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
 
+	@Rule
+	public JdbcStatisticsRule jdbcStatistics = new JdbcStatisticsRule();
+
 	private static SecurityClient securityClient;
 
 	private static final String ARTICLE_NO_AVAILABLE = "VZ90/10";
@@ -163,6 +168,27 @@ public class ArticleManagementTest {
 		}
 	}
 
+	@Test
+	@JdbcLimit(statements = 2)
+	public void findArticleWithAttributes() throws ArticleNotFoundException {
+		resetJdbcStatistics();
+		final Article article = am.findArticleByArticleNoWithAttributes(ARTICLE_NO_AVAILABLE);
+
+		assertThat(article.getAttributes().isEmpty(), is(false));
+	}
+
+	@Test
+	@JdbcLimit(statements = 2)
+	public void findAttributeWithArticles() throws ArticleNotFoundException, AttributeNotFoundException {
+		final Article article = am.findArticleByArticleNoWithAttributes(ARTICLE_NO_AVAILABLE);
+		final Long attributeId = article.getAttributes().get(0).getId();
+
+		resetJdbcStatistics();
+		final Attribute attribute = am.findAttributeByIdWithArticles(attributeId);
+
+		assertThat(attribute.getArticles().isEmpty(), is(false));
+	}
+
 	@Test
 	public void findarticleByFaultId() throws ArticleNotFoundException {
 		thrown.expect(ArticleNotFoundException.class);
@@ -194,8 +220,10 @@ public class ArticleManagementTest {
 	}
 
 	@Test
-	public void findAttributesByName() throws AttributeNotFoundException {
+	@JdbcLimit(statements = 2)
+	public void findAttributesByName() throws AttributeNotFoundException, ArticleNotFoundException {
 		final String attributename = ATTRIBUTE_NAME_AVAILABLE;
+		resetJdbcStatistics();
 		final Collection<Attribute> attributes = am
 				.findAttributesByName(attributename);
 		assertThat(attributes.isEmpty(), is(false));
@@ -205,4 +233,12 @@ public class ArticleManagementTest {
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Zaehler vor dem gemessenen Aufruf zuruecksetzen, siehe OrderManagementTest
+	 */
+	private void resetJdbcStatistics() throws ArticleNotFoundException {
+		am.findArticleByArticleNo(ARTICLE_NO_AVAILABLE);
+		jdbcStatistics.reset();
+	}
+
+}
\ No newline at end of file
@@ -16,7 +16,6 @@ import javax.ejb.EJBAccessException;
 import javax.security.auth.login.LoginException;
 
 import org.jboss.arquillian.api.Deployment;
-import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.security.client.SecurityClient;
 import org.jboss.security.client.SecurityClientFactory;
 import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
@@ -48,15 +47,21 @@ import en.webshop.profileManagement.service.ProfileManagement;
 import en.webshop.profileManagement.service.ProfileNotFoundException;
 import en.webshop.test.util.ArchiveUtil;
 import en.webshop.test.util.DbReloadProvider;
+import en.webshop.test.util.JdbcLimit;
+import en.webshop.test.util.JdbcStatisticsRule;
+import en.webshop.test.util.SuiteArquillian;
 import en.webshop.util.ConcurrentDeletedException;
 import en.webshop.util.ConcurrentUpdatedException;
 
-@RunWith(Arquillian.class)
+@RunWith(SuiteArquillian.class)
 public class OrderManagementTest {
     
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
 
+	@Rule
+	public JdbcStatisticsRule jdbcStatistics = new JdbcStatisticsRule();
+
 	private static final Locale LOCALE = Locale.GERMAN;
 
 	private static SecurityClient securityClient;
@@ -144,12 +149,32 @@ public class OrderManagementTest {
 	}
 
 	@Test
-	public void findOrdersByEmail() throws OrderNotFoundException {
+	@JdbcLimit(statements = 2)
+	public void findOrderByOrderId() throws OrderNotFoundException, InvalidOrderIdException, ArticleNotFoundException {
+		resetJdbcStatistics();
+		Order order = om.findOrderByOrderId(ORDER_ID_EXISTENT, LOCALE);
+
+		assertThat(order.getId(), is(ORDER_ID_EXISTENT));
+	}
 
+	@Test
+	@JdbcLimit(statements = 2)
+	public void findOrdersByEmail() throws OrderNotFoundException, ArticleNotFoundException {
+		resetJdbcStatistics();
 		List<Order> orders = om.findOrdersByEmail(PROFILE_EMAIL_EXISTENT);
 
 		assertThat(orders == null || orders.size() == 0, is(false));
 	}
+
+	/**
+	 * Nur der folgende Aufruf der Session Bean wird gezaehlt, der Report liegt im JBoss
+	 * (JdbcStatisticsRule). Der erste Aufruf nach dem Login authentifiziert ueber die DB
+	 * und wird deshalb vorher ausgefuehrt.
+	 */
+	private void resetJdbcStatistics() throws ArticleNotFoundException {
+		am.findArticleByArticleNo(ARTICLE_NO_1);
+		jdbcStatistics.reset();
+	}
 	
 	@Test
 	public void setOrderStatus() throws OrderNotFoundException, InvalidOrderIdException, StatusAlreadySetException, ConcurrentUpdatedException, ConcurrentDeletedException {
@@ -17,7 +17,6 @@ import javax.ejb.EJBAccessException;
 import javax.security.auth.login.LoginException;
 
 import org.jboss.arquillian.api.Deployment;
-import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.security.client.SecurityClient;
 import org.jboss.security.client.SecurityClientFactory;
 import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
@@ -40,11 +39,12 @@ import en.webshop.profileManagement.service.ProfileNotFoundException;
 import en.webshop.profileManagement.service.ProfileValidationException;
 import en.webshop.test.util.ArchiveUtil;
 import en.webshop.test.util.DbReloadProvider;
+import en.webshop.test.util.SuiteArquillian;
 import en.webshop.util.ConcurrentDeletedException;
 import en.webshop.util.ConcurrentUpdatedException;
 
 
-@RunWith(Arquillian.class)
+@RunWith(SuiteArquillian.class)
 public class ProfileManagementTest {
 	
 	private static final Locale LOCALE = Locale.GERMAN;
@@ -0,0 +1,108 @@
+package en.webshop.test.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.security.auth.login.LoginException;
+
+import org.jboss.security.client.SecurityClient;
+import org.jboss.security.client.SecurityClientFactory;
+
+import en.webshop.articleManagement.service.ArticleManagement;
+import en.webshop.orderManagement.service.OrderManagement;
+import en.webshop.profileManagement.service.ProfileManagement;
+import en.webshop.test.util.DbReloadProvider;
+
+/**
+ * Einstellungen aus bench.properties und Zugriff auf die Session Beans im JBoss
+ * fuer die Benchmarks und den Lastgenerator
+ */
+public final class BenchConfig {
+	private static final String PROPERTIES_NAME = "bench.properties";
+	private static final Properties PROPERTIES = new Properties();
+	private static boolean dbReloaded;
+
+	static {
+		final InputStream inputStream = Thread.currentThread().getContextClassLoader()
+		                                      .getResourceAsStream(PROPERTIES_NAME);
+		if (inputStream == null) {
+			throw new IllegalStateException("Die Datei " + PROPERTIES_NAME + " fehlt im Classpath");
+		}
+		try {
+			PROPERTIES.load(inputStream);
+			inputStream.close();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private BenchConfig() {
+	}
+
+	public static String get(String key) {
+		final String value = PROPERTIES.getProperty(key);
+		if (value == null) {
+			throw new IllegalStateException("Der Eintrag " + key + " fehlt in " + PROPERTIES_NAME);
+		}
+		return value.trim();
+	}
+
+	/**
+	 * Die DB einmal pro JVM mit db.xml laden, wie in den JUnit-Tests
+	 */
+	public static synchronized void reloadDb() throws Exception {
+		if (dbReloaded) {
+			return;
+		}
+		DbReloadProvider.reload();
+		dbReloaded = true;
+	}
+
+	/**
+	 * Login mit Benutzername und Passwort aus bench.properties. Im JBoss-Client gilt
+	 * das Login fuer die ganze JVM, ausser mit
+	 * -Dorg.jboss.security.SecurityAssociation.ThreadLocal=true.
+	 */
+	public static SecurityClient login() throws LoginException {
+		return login(get("username"), get("password"));
+	}
+
+	public static SecurityClient login(String username, String password) throws LoginException {
+		final SecurityClient securityClient;
+		try {
+			securityClient = SecurityClientFactory.getSecurityClient();
+		}
+		catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		securityClient.setSimple(username, password);
+		securityClient.login();
+		return securityClient;
+	}
+
+	public static ArticleManagement lookupArticleManagement() throws NamingException {
+		return lookup(ArticleManagement.class, "articleManagement");
+	}
+
+	public static OrderManagement lookupOrderManagement() throws NamingException {
+		return lookup(OrderManagement.class, "orderManagement");
+	}
+
+	public static ProfileManagement lookupProfileManagement() throws NamingException {
+		return lookup(ProfileManagement.class, "profileManagement");
+	}
+
+	private static <T> T lookup(Class<T> type, String key) throws NamingException {
+		final InitialContext ctx = new InitialContext();
+		try {
+			return type.cast(ctx.lookup(get(key)));
+		}
+		finally {
+			ctx.close();
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package en.webshop.test.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Startet die Benchmarks und schreibt die Ergebnisse als JSON, damit sie mit
+ * frueheren Laeufen verglichen werden koennen.
+ *
+ * Aufruf: BenchmarkRunner [Ergebnisdatei] [Threads]
+ */
+public final class BenchmarkRunner {
+	private static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		final String result = args.length > 0 ? args[0] : DEFAULT_RESULT;
+		final int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+		final Options options = new OptionsBuilder().include(ServiceBenchmark.class.getName())
+		                                            .threads(threads)
+		                                            .resultFormat(ResultFormatType.JSON)
+		                                            .result(result)
+		                                            .build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,52 @@
+package en.webshop.test.bench;
+
+import java.util.Arrays;
+
+/**
+ * Die Latenzen einer Operation in Mikrosekunden. Jeder Thread hat einen eigenen
+ * LatencyRecorder, am Ende werden sie mit merge() zusammengefasst.
+ */
+public class LatencyRecorder {
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final long NANOS_PER_MICRO = 1000L;
+
+	private int[] micros = new int[INITIAL_CAPACITY];
+	private int count;
+	private boolean sorted;
+
+	public void record(long nanos) {
+		if (count == micros.length) {
+			micros = Arrays.copyOf(micros, count * 2);
+		}
+		micros[count++] = (int) Math.min(Integer.MAX_VALUE, nanos / NANOS_PER_MICRO);
+		sorted = false;
+	}
+
+	public void merge(LatencyRecorder other) {
+		if (count + other.count > micros.length) {
+			micros = Arrays.copyOf(micros, Math.max(micros.length * 2, count + other.count));
+		}
+		System.arraycopy(other.micros, 0, micros, count, other.count);
+		count += other.count;
+		sorted = false;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Das Perzentil in Mikrosekunden, z.B. 99.9 fuer p999
+	 */
+	public int percentile(double percent) {
+		if (count == 0) {
+			return 0;
+		}
+		if (!sorted) {
+			Arrays.sort(micros, 0, count);
+			sorted = true;
+		}
+		final int index = (int) Math.ceil(percent / 100 * count) - 1;
+		return micros[Math.max(0, Math.min(count - 1, index))];
+	}
+}
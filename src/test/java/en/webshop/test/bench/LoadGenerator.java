@@ -0,0 +1,359 @@
+package en.webshop.test.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.login.LoginException;
+
+import org.jboss.security.client.SecurityClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import en.webshop.articleManagement.domain.Article;
+import en.webshop.articleManagement.service.ArticleManagement;
+import en.webshop.articleManagement.service.ArticleQuantityException;
+import en.webshop.orderManagement.domain.Order;
+import en.webshop.orderManagement.domain.OrderPosition;
+import en.webshop.orderManagement.service.OrderManagement;
+import en.webshop.profileManagement.domain.Profile;
+import en.webshop.profileManagement.service.ProfileManagement;
+import en.webshop.util.ConcurrentUpdatedException;
+
+/**
+ * Lastgenerator fuer die Session Beans: Mehrere Threads fuehren eine gewichtete
+ * Mischung aus Artikelsuche, Bestellung und Profilaenderung aus. Das Login gilt
+ * im JBoss-Client ohne -Dorg.jboss.security.SecurityAssociation.ThreadLocal=true
+ * fuer die ganze JVM und erfolgt deshalb einmal vor dem Start der Threads; das
+ * Logout erst, wenn alle Threads beendet sind. Gemessen werden Durchsatz, p50/p99/p999 der Latenz und die
+ * Exceptions pro Operation, insbesondere ConcurrentUpdatedException und
+ * ArticleQuantityException.
+ *
+ * Die Bestellungen verteilen sich zufaellig auf die Kunden aus load.orderEmails
+ * und die Artikel aus load.orderArticleNos. main() laedt die DB vor jedem Lauf neu,
+ * d.h. jeder Lauf beginnt mit dem vollen Bestand. Ab der ersten
+ * ArticleQuantityException werden die Bestellungen getrennt ausgewertet, weil sie
+ * danach nicht mehr mit den normalen Bestellungen vergleichbar sind.
+ *
+ * Die Einstellungen stehen in bench.properties unter load.*
+ */
+public final class LoadGenerator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+
+	private static final Locale LOCALE = Locale.GERMAN;
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final double MICROS_PER_MILLI = 1000.0;
+	private static final short ORDER_QUANTITY = 1;
+	private static final String FIRST_NAME_SUFFIX = "x";
+	private static final long NOT_EXHAUSTED = Long.MIN_VALUE;
+
+	/**
+	 * Die Operationen der Mischung mit ihrem Namen in load.mix
+	 */
+	private enum Operation {
+		BROWSE, ORDER, PROFILE
+	}
+
+	private final int[] weights = new int[Operation.values().length];
+	private final int totalWeight;
+	private final int threads;
+	private final long durationNanos;
+	private final String articleNo;
+	private final String[] orderEmails;
+	private final String[] orderArticleNos;
+	private final int orderPositions;
+	private final String[] profileEmails;
+
+	private final Map<Operation, LatencyRecorder> latencies = new EnumMap<Operation, LatencyRecorder>(Operation.class);
+	private final Map<Operation, Map<String, Integer>> errors =
+	                                                   new EnumMap<Operation, Map<String, Integer>>(Operation.class);
+
+	// Bestellungen nach der ersten ArticleQuantityException
+	private final AtomicLong exhaustedAt = new AtomicLong(NOT_EXHAUSTED);
+	private final LatencyRecorder exhaustedLatencies = new LatencyRecorder();
+	private final Map<String, Integer> exhaustedErrors = new TreeMap<String, Integer>();
+	private long runStart;
+
+	public LoadGenerator() {
+		int sum = 0;
+		for (String entry : BenchConfig.get("load.mix").split(",")) {
+			final String[] nameWeight = entry.trim().split(":");
+			final Operation operation = Operation.valueOf(nameWeight[0].trim().toUpperCase(Locale.ENGLISH));
+			weights[operation.ordinal()] = Integer.parseInt(nameWeight[1].trim());
+			sum += weights[operation.ordinal()];
+		}
+		if (sum <= 0) {
+			throw new IllegalStateException("load.mix enthaelt keine Operation");
+		}
+		totalWeight = sum;
+
+		threads = Integer.parseInt(BenchConfig.get("load.threads"));
+		durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(BenchConfig.get("load.durationSeconds")));
+		articleNo = BenchConfig.get("articleNo");
+		orderEmails = split(BenchConfig.get("load.orderEmails"));
+		orderArticleNos = split(BenchConfig.get("load.orderArticleNos"));
+		orderPositions = Math.min(Integer.parseInt(BenchConfig.get("load.orderPositions")), orderArticleNos.length);
+		profileEmails = split(BenchConfig.get("load.profileEmails"));
+
+		for (Operation operation : Operation.values()) {
+			latencies.put(operation, new LatencyRecorder());
+			errors.put(operation, new TreeMap<String, Integer>());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		BenchConfig.reloadDb();
+		new LoadGenerator().run();
+	}
+
+	public void run() throws InterruptedException, LoginException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Worker> workers = new ArrayList<Worker>(threads);
+		final List<Thread> workerThreads = new ArrayList<Thread>(threads);
+		final long nanos;
+		final SecurityClient securityClient = BenchConfig.login();
+		try {
+			for (int i = 0; i < threads; i++) {
+				final Worker worker = new Worker(start, i);
+				final Thread thread = new Thread(worker, "load-" + i);
+				workers.add(worker);
+				workerThreads.add(thread);
+				thread.start();
+			}
+
+			runStart = System.nanoTime();
+			start.countDown();
+			for (Thread thread : workerThreads) {
+				thread.join();
+			}
+			nanos = System.nanoTime() - runStart;
+		}
+		finally {
+			// Erst nach allen Threads, sonst fehlt den restlichen Aufrufen das Login
+			securityClient.logout();
+		}
+
+		for (Worker worker : workers) {
+			worker.mergeInto(latencies, errors, exhaustedLatencies, exhaustedErrors);
+		}
+		report(nanos);
+	}
+
+	private void report(long nanos) {
+		final double seconds = (double) nanos / NANOS_PER_SECOND;
+		LOGGER.info(String.format(Locale.ENGLISH, "%d Threads, %.1f s, Mischung %s", threads, seconds,
+		                          BenchConfig.get("load.mix")));
+		final long exhausted = exhaustedAt.get();
+		final double exhaustedSeconds = exhausted == NOT_EXHAUSTED
+		                                ? seconds
+		                                : (double) (exhausted - runStart) / NANOS_PER_SECOND;
+		for (Operation operation : Operation.values()) {
+			// Die normalen Bestellungen nur bis zum erschoepften Bestand
+			report(operation.toString(), latencies.get(operation), errors.get(operation),
+			       operation == Operation.ORDER ? exhaustedSeconds : seconds);
+		}
+
+		if (exhausted != NOT_EXHAUSTED) {
+			LOGGER.info(String.format(Locale.ENGLISH, "Bestand erschoepft nach %.1f s, danach:", exhaustedSeconds));
+			report(Operation.ORDER.toString(), exhaustedLatencies, exhaustedErrors, seconds - exhaustedSeconds);
+		}
+	}
+
+	private static void report(String name, LatencyRecorder recorder, Map<String, Integer> operationErrors,
+	                           double seconds) {
+		int errorCount = 0;
+		for (Integer count : operationErrors.values()) {
+			errorCount += count;
+		}
+		final int calls = recorder.getCount() + errorCount;
+		if (calls == 0) {
+			return;
+		}
+
+		LOGGER.info(String.format(Locale.ENGLISH,
+		                          "%-8s %8d Aufrufe %9.1f/s  p50 %8.2f ms  p99 %8.2f ms  p999 %8.2f ms",
+		                          name, calls, calls / seconds,
+		                          recorder.percentile(50) / MICROS_PER_MILLI,
+		                          recorder.percentile(99) / MICROS_PER_MILLI,
+		                          recorder.percentile(99.9) / MICROS_PER_MILLI));
+		for (Map.Entry<String, Integer> entry : operationErrors.entrySet()) {
+			LOGGER.info(String.format(Locale.ENGLISH, "         %-40s %8d (%.2f %%)", entry.getKey(),
+			                          entry.getValue(), entry.getValue() * 100.0 / calls));
+		}
+	}
+
+	private Operation nextOperation(Random random) {
+		int value = random.nextInt(totalWeight);
+		for (Operation operation : Operation.values()) {
+			value -= weights[operation.ordinal()];
+			if (value < 0) {
+				return operation;
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * Der Name fuer die Statistik: ConcurrentUpdatedException und ArticleQuantityException
+	 * werden auch gefunden, wenn sie z.B. in eine EJBException eingepackt sind
+	 */
+	private static String errorName(Throwable t) {
+		for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConcurrentUpdatedException || cause instanceof ArticleQuantityException) {
+				return cause.getClass().getSimpleName();
+			}
+		}
+		return t.getClass().getSimpleName();
+	}
+
+	private static void addErrors(Map<String, Integer> to, String name, int count) {
+		final Integer oldCount = to.get(name);
+		to.put(name, oldCount == null ? count : oldCount + count);
+	}
+
+	private static String[] split(String value) {
+		final String[] values = value.split(",");
+		for (int i = 0; i < values.length; i++) {
+			values[i] = values[i].trim();
+		}
+		return values;
+	}
+
+	/**
+	 * Ein Thread des Lastgenerators mit eigenem Login und eigener Statistik
+	 */
+	private class Worker implements Runnable {
+		private final CountDownLatch start;
+		private final Random random;
+		private final Map<Operation, LatencyRecorder> workerLatencies =
+		                                              new EnumMap<Operation, LatencyRecorder>(Operation.class);
+		private final Map<Operation, Map<String, Integer>> workerErrors =
+		                                                   new EnumMap<Operation, Map<String, Integer>>(Operation.class);
+		private final LatencyRecorder workerExhaustedLatencies = new LatencyRecorder();
+		private final Map<String, Integer> workerExhaustedErrors = new TreeMap<String, Integer>();
+		private ArticleManagement am;
+		private OrderManagement om;
+		private ProfileManagement pm;
+
+		Worker(CountDownLatch start, int index) {
+			this.start = start;
+			this.random = new Random(index);
+			for (Operation operation : Operation.values()) {
+				workerLatencies.put(operation, new LatencyRecorder());
+				workerErrors.put(operation, new TreeMap<String, Integer>());
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				am = BenchConfig.lookupArticleManagement();
+				om = BenchConfig.lookupOrderManagement();
+				pm = BenchConfig.lookupProfileManagement();
+				start.await();
+			}
+			catch (Exception e) {
+				LOGGER.error(Thread.currentThread().getName() + " kann nicht starten", e);
+				return;
+			}
+
+			final long end = System.nanoTime() + durationNanos;
+			while (System.nanoTime() < end) {
+				final Operation operation = nextOperation(random);
+				final boolean exhausted = operation == Operation.ORDER && exhaustedAt.get() != NOT_EXHAUSTED;
+				final long begin = System.nanoTime();
+				try {
+					execute(operation);
+					(exhausted ? workerExhaustedLatencies : workerLatencies.get(operation))
+					        .record(System.nanoTime() - begin);
+				}
+				catch (Exception e) {
+					final String name = errorName(e);
+					if (ArticleQuantityException.class.getSimpleName().equals(name)) {
+						exhaustedAt.compareAndSet(NOT_EXHAUSTED, begin);
+					}
+					addErrors(exhausted ? workerExhaustedErrors : workerErrors.get(operation), name, 1);
+				}
+			}
+		}
+
+		private void execute(Operation operation) throws Exception {
+			switch (operation) {
+				case BROWSE:
+					am.findArticleByArticleNoWithAttributes(articleNo);
+					break;
+				case ORDER:
+					createOrder();
+					break;
+				case PROFILE:
+					updateProfile();
+					break;
+				default:
+					throw new IllegalStateException(operation.toString());
+			}
+		}
+
+		private void createOrder() throws Exception {
+			final Order order = new Order();
+			order.setOrderPositions(new ArrayList<OrderPosition>());
+			for (String orderArticleNo : pickArticleNos()) {
+				final Article article = am.findArticleByArticleNo(orderArticleNo);
+				final OrderPosition pos = new OrderPosition(article);
+				pos.setQuantity(ORDER_QUANTITY);
+				order.getOrderPositions().add(pos);
+				pos.setOrder(order);
+			}
+			// createOrder braucht wie in OrderManagementTest den Kunden mit Bestellungen
+			final String email = orderEmails[random.nextInt(orderEmails.length)];
+			final Profile profile = pm.findProfileWithOrdersByEmail(email, LOCALE);
+			order.setCustomer(profile);
+			om.createOrder(order, LOCALE, false);
+		}
+
+		/**
+		 * orderPositions verschiedene, zufaellig gewaehlte Artikel
+		 */
+		private List<String> pickArticleNos() {
+			final List<String> articleNos = new ArrayList<String>(orderArticleNos.length);
+			Collections.addAll(articleNos, orderArticleNos);
+			Collections.shuffle(articleNos, random);
+			return articleNos.subList(0, orderPositions);
+		}
+
+		private void updateProfile() throws Exception {
+			final String email = profileEmails[random.nextInt(profileEmails.length)];
+			final Profile profile = pm.findProfileByEmail(email, LOCALE);
+			// Abwechselnd ein Zeichen anhaengen und entfernen, damit der Vorname nicht waechst
+			final String firstName = profile.getFirstName();
+			profile.setFirstName(firstName.endsWith(FIRST_NAME_SUFFIX)
+			                     ? firstName.substring(0, firstName.length() - FIRST_NAME_SUFFIX.length())
+			                     : firstName + FIRST_NAME_SUFFIX);
+			pm.updateProfile(profile, LOCALE, false);
+		}
+
+		/**
+		 * Nach dem Ende aller Threads aufrufen
+		 */
+		void mergeInto(Map<Operation, LatencyRecorder> allLatencies, Map<Operation, Map<String, Integer>> allErrors,
+		               LatencyRecorder allExhaustedLatencies, Map<String, Integer> allExhaustedErrors) {
+			for (Operation operation : Operation.values()) {
+				allLatencies.get(operation).merge(workerLatencies.get(operation));
+				for (Map.Entry<String, Integer> entry : workerErrors.get(operation).entrySet()) {
+					addErrors(allErrors.get(operation), entry.getKey(), entry.getValue());
+				}
+			}
+			allExhaustedLatencies.merge(workerExhaustedLatencies);
+			for (Map.Entry<String, Integer> entry : workerExhaustedErrors.entrySet()) {
+				addErrors(allExhaustedErrors, entry.getKey(), entry.getValue());
+			}
+		}
+	}
+}
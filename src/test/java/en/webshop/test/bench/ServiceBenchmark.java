@@ -0,0 +1,87 @@
+package en.webshop.test.bench;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.security.client.SecurityClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import en.webshop.articleManagement.domain.Article;
+import en.webshop.articleManagement.service.ArticleManagement;
+import en.webshop.articleManagement.service.ArticleNotFoundException;
+import en.webshop.orderManagement.domain.Order;
+import en.webshop.orderManagement.service.OrderManagement;
+import en.webshop.orderManagement.service.OrderNotFoundException;
+import en.webshop.profileManagement.domain.Profile;
+import en.webshop.profileManagement.service.InvalidLastNameException;
+import en.webshop.profileManagement.service.ProfileManagement;
+import en.webshop.profileManagement.service.ProfileNotFoundException;
+
+/**
+ * JMH-Benchmarks fuer die lesenden Methoden der Session Beans. Die DB wird vorher
+ * einmal mit db.xml geladen. Throughput liefert Aufrufe pro Sekunde, SampleTime
+ * die Perzentile der Latenz pro Methode.
+ *
+ * Jeder Benchmark-Thread meldet sich mit einem eigenen SecurityClient an.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class ServiceBenchmark {
+	private static final Locale LOCALE = Locale.GERMAN;
+	private static final int PROFILE_ROLE_CUSTOMER = 1;
+
+	private final String articleNo = BenchConfig.get("articleNo");
+	private final String email = BenchConfig.get("email");
+	private final String lastName = BenchConfig.get("lastName");
+
+	private ArticleManagement am;
+	private OrderManagement om;
+	private ProfileManagement pm;
+	private SecurityClient securityClient;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		BenchConfig.reloadDb();
+		am = BenchConfig.lookupArticleManagement();
+		om = BenchConfig.lookupOrderManagement();
+		pm = BenchConfig.lookupProfileManagement();
+		securityClient = BenchConfig.login();
+	}
+
+	@TearDown(Level.Trial)
+	public void logout() {
+		securityClient.logout();
+	}
+
+	@Benchmark
+	public Article findArticleByArticleNoWithAttributes() throws ArticleNotFoundException {
+		return am.findArticleByArticleNoWithAttributes(articleNo);
+	}
+
+	@Benchmark
+	public List<Order> findOrdersByEmail() throws OrderNotFoundException {
+		return om.findOrdersByEmail(email);
+	}
+
+	@Benchmark
+	public Collection<Profile> findProfilesByLastName() throws ProfileNotFoundException, InvalidLastNameException {
+		return pm.findProfilesByLastName(lastName, PROFILE_ROLE_CUSTOMER, LOCALE);
+	}
+}
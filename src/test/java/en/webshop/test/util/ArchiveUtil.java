@@ -57,10 +57,27 @@ public abstract class ArchiveUtil {
 		 * @return
 		 */
 		ejbJar.addClasses(DbReloadProvider.class, DbReload.class);
+		/**
+		 * Die Rule fuer die JDBC-Obergrenzen laeuft ebenfalls im JBoss. CountingDriver
+		 * und JdbcStatistics liegen dort im lib-Verzeichnis des Servers
+		 * @return
+		 */
+		ejbJar.addClasses(JdbcStatisticsRule.class, JdbcLimit.class);
+		/**
+		 * Der Runner der Testklassen wird auch im JBoss benutzt
+		 * @return
+		 */
+		ejbJar.addClasses(SuiteArquillian.class);
 		ear.addModule(ejbJar);
 
-		LOGGER.info(NEWLINE + ear.toString(true) + NEWLINE + NEWLINE
-				+ ejbJar.toString(true) + NEWLINE);
+		/**
+		 * Die vollstaendige Auflistung wird nur fuer DEBUG erzeugt
+		 * @return
+		 */
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(NEWLINE + ear.toString(true) + NEWLINE + NEWLINE
+					+ ejbJar.toString(true) + NEWLINE);
+		}
 
 		return ear;
 	}
@@ -0,0 +1,382 @@
+package en.webshop.test.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Kompiliert ein Flat-XML-Dataset in ein spaltenorientiertes Binaerformat, das
+ * BinaryDataSetReader per Memory-Mapping ohne XML-Parser und ohne Konvertierung
+ * von Strings lesen kann. Der Dateiname enthaelt einen SHA-1-Hash ueber die Bytes
+ * des XML-Datasets, die URL der DB und das Schema, d.h. fuer die Pruefung wird das
+ * XML nicht geparst. Die Spaltentypen beim Kompilieren stehen im Kopf der Datei und
+ * werden mit den Metadaten der DB verglichen. Nach einer Aenderung an db.xml, an
+ * db.properties oder an den Spaltentypen wird automatisch neu kompiliert.
+ *
+ * Format: MAGIC, VERSION, Anzahl der Tabellen und pro Tabelle Name, Anzahl Spalten
+ * sowie Name und SQL-Typ jeder Spalte, danach die Segmente
+ * jeweils mit SEGMENT_START, Laenge in Bytes, Tabelle, Spalten, Anzahl Zeilen und
+ * pro Spalte NULL-Bitmap und Werte. Das Ende markiert SEGMENT_END. Ueber die Laenge
+ * koennen die Segmente einer einzelnen Tabelle gelesen werden, ohne die anderen
+ * Segmente zu dekodieren.
+ *
+ * Als Build-Schritt: java en.webshop.test.util.BinaryDataSetCompiler
+ */
+public final class BinaryDataSetCompiler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BinaryDataSetCompiler.class);
+
+	static final int MAGIC = 0x57534453;
+	static final int VERSION = 3;
+	static final byte SEGMENT_START = 1;
+	static final byte SEGMENT_END = 0;
+
+	static final byte KIND_INT = 1;
+	static final byte KIND_LONG = 2;
+	static final byte KIND_DOUBLE = 3;
+	static final byte KIND_DECIMAL = 4;
+	static final byte KIND_BOOLEAN = 5;
+	static final byte KIND_DATE = 6;
+	static final byte KIND_TIME = 7;
+	static final byte KIND_TIMESTAMP = 8;
+	static final byte KIND_BYTES = 9;
+	static final byte KIND_STRING = 10;
+
+	static final String CHARSET = "UTF-8";
+	private static final String SUFFIX = ".bin";
+	private static final String TMP_SUFFIX = "-tmp";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private BinaryDataSetCompiler() {
+	}
+
+	/**
+	 * Die kompilierte Datei zum aktuellen Inhalt des Datasets liefern und sie bei
+	 * Bedarf erzeugen. Veraltete Dateien desselben Datasets werden geloescht.
+	 */
+	public static File compileIfChanged(URL dataset, Connection conn, String schema, int batchSize, File dir)
+	       throws IOException, SQLException {
+		final String baseName = baseName(dataset);
+		final File target = new File(dir, baseName + "-" + hash(dataset, conn.getMetaData().getURL(), schema)
+		                                  + SUFFIX);
+		if (target.isFile()) {
+			if (columnTypesMatch(target, conn, schema)) {
+				return target;
+			}
+			LOGGER.info("Die Spaltentypen in " + target + " passen nicht zur DB, es wird neu kompiliert");
+		}
+
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Das Verzeichnis " + dir + " kann nicht angelegt werden");
+		}
+
+		final long start = System.currentTimeMillis();
+		// createTempFile verlangt mindestens 3 Zeichen als Praefix, z.B. "db" fuer db.xml
+		final File tmp = File.createTempFile(baseName + TMP_SUFFIX, SUFFIX, dir);
+		try {
+			compile(new FlatXmlSegmentSource(dataset, conn, schema, batchSize), conn, schema, tmp);
+			if (target.exists() && !target.delete()) {
+				throw new IOException("Die Datei " + target + " kann nicht ersetzt werden");
+			}
+			if (!tmp.renameTo(target)) {
+				throw new IOException("Die Datei " + tmp + " kann nicht in " + target + " umbenannt werden");
+			}
+		}
+		finally {
+			if (tmp.exists() && !tmp.delete()) {
+				LOGGER.warn("Die temporaere Datei " + tmp + " kann nicht geloescht werden");
+			}
+		}
+
+		// Veraltete Dateien erst loeschen, wenn die neue Datei vollstaendig ist
+		final File[] stale = dir.listFiles();
+		if (stale != null) {
+			for (File file : stale) {
+				if (file.getName().startsWith(baseName + "-") && file.getName().endsWith(SUFFIX)
+				    && !file.equals(target) && !file.delete()) {
+					LOGGER.warn("Die veraltete Datei " + file + " kann nicht geloescht werden");
+				}
+			}
+		}
+		LOGGER.info(dataset + " wurde in " + (System.currentTimeMillis() - start) + " ms nach " + target
+		            + " kompiliert");
+		return target;
+	}
+
+	/**
+	 * Ob die Spaltentypen im Kopf der Datei noch den Metadaten der DB entsprechen.
+	 * Eine unlesbare Datei wird neu kompiliert.
+	 */
+	private static boolean columnTypesMatch(File file, Connection conn, String schema) throws SQLException {
+		final Map<String, Map<String, Integer>> columnTypes;
+		try {
+			columnTypes = BinaryDataSetReader.readColumnTypes(file);
+		}
+		catch (IOException e) {
+			LOGGER.warn("Die Datei " + file + " kann nicht gelesen werden: " + e.getMessage());
+			return false;
+		}
+		for (Map.Entry<String, Map<String, Integer>> table : columnTypes.entrySet()) {
+			if (!TableMetadata.get(conn, schema, table.getKey()).getSqlTypes().equals(table.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Alle Segmente einer Quelle in die Datei schreiben. Die Spaltentypen der
+	 * Tabellen werden aus den Metadaten der DB in den Kopf uebernommen.
+	 */
+	public static void compile(SegmentSource source, Connection conn, String schema, File file)
+	       throws IOException, SQLException {
+		final DataOutputStream out =
+		      new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			final List<String> tables = source.getTableNames();
+			out.writeInt(tables.size());
+			for (String table : tables) {
+				writeString(out, table);
+				final Map<String, Integer> sqlTypes = TableMetadata.get(conn, schema, table).getSqlTypes();
+				out.writeInt(sqlTypes.size());
+				for (Map.Entry<String, Integer> column : sqlTypes.entrySet()) {
+					writeString(out, column.getKey());
+					out.writeInt(column.getValue());
+				}
+			}
+
+			source.read(new SegmentSource.Sink() {
+				@Override
+				public void segment(DataSegment segment) throws SQLException {
+					try {
+						writeSegment(out, segment);
+					}
+					catch (IOException e) {
+						throw new SQLException("Das Segment fuer " + segment.getTable()
+						                       + " kann nicht geschrieben werden", e);
+					}
+				}
+			});
+			out.writeByte(SEGMENT_END);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static void writeSegment(DataOutputStream out, DataSegment segment) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		writeSegmentContent(new DataOutputStream(bytes), segment);
+		out.writeByte(SEGMENT_START);
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+	}
+
+	private static void writeSegmentContent(DataOutputStream out, DataSegment segment) throws IOException {
+		final String[] columns = segment.getColumns();
+		final int[] sqlTypes = segment.getSqlTypes();
+		final List<Object[]> rows = segment.getRows();
+
+		writeString(out, segment.getTable());
+		out.writeInt(columns.length);
+		for (int i = 0; i < columns.length; i++) {
+			writeString(out, columns[i]);
+			out.writeInt(sqlTypes[i]);
+			out.writeByte(kind(sqlTypes[i]));
+		}
+		out.writeInt(rows.size());
+
+		// Spaltenweise: zuerst die NULL-Bitmap, dann die Werte ungleich NULL
+		final byte[] nulls = new byte[(rows.size() + 7) / 8];
+		for (int c = 0; c < columns.length; c++) {
+			Arrays.fill(nulls, (byte) 0);
+			for (int r = 0; r < rows.size(); r++) {
+				if (rows.get(r)[c] == null) {
+					nulls[r >> 3] |= 1 << (r & 7);
+				}
+			}
+			out.write(nulls);
+
+			final byte kind = kind(sqlTypes[c]);
+			for (Object[] row : rows) {
+				if (row[c] != null) {
+					writeValue(out, kind, row[c]);
+				}
+			}
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, byte kind, Object value) throws IOException {
+		switch (kind) {
+			case KIND_INT:
+				out.writeInt(((Number) value).intValue());
+				break;
+			case KIND_LONG:
+				out.writeLong(((Number) value).longValue());
+				break;
+			case KIND_DOUBLE:
+				out.writeDouble(((Number) value).doubleValue());
+				break;
+			case KIND_DECIMAL:
+				final BigDecimal decimal = (BigDecimal) value;
+				out.writeInt(decimal.scale());
+				writeBytes(out, decimal.unscaledValue().toByteArray());
+				break;
+			case KIND_BOOLEAN:
+				out.writeBoolean((Boolean) value);
+				break;
+			case KIND_DATE:
+				out.writeLong(((Date) value).getTime());
+				break;
+			case KIND_TIME:
+				out.writeLong(((Time) value).getTime());
+				break;
+			case KIND_TIMESTAMP:
+				final Timestamp timestamp = (Timestamp) value;
+				out.writeLong(timestamp.getTime());
+				out.writeInt(timestamp.getNanos());
+				break;
+			case KIND_BYTES:
+				writeBytes(out, (byte[]) value);
+				break;
+			default:
+				writeString(out, value.toString());
+		}
+	}
+
+	/**
+	 * Die Speicherart zu einem SQL-Typ, passend zu TableMetadata.convert()
+	 */
+	static byte kind(int sqlType) {
+		switch (sqlType) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return KIND_BOOLEAN;
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return KIND_INT;
+			case Types.BIGINT:
+				return KIND_LONG;
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return KIND_DOUBLE;
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				return KIND_DECIMAL;
+			case Types.DATE:
+				return KIND_DATE;
+			case Types.TIME:
+				return KIND_TIME;
+			case Types.TIMESTAMP:
+				return KIND_TIMESTAMP;
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return KIND_BYTES;
+			default:
+				return KIND_STRING;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		writeBytes(out, value.getBytes(CHARSET));
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	/**
+	 * SHA-1 ueber die Version des Binaerformats, die URL der DB, das Schema und die
+	 * Bytes des Datasets, ohne das XML zu parsen
+	 */
+	static String hash(URL dataset, String dbUrl, String schema) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update((byte) VERSION);
+		update(digest, dbUrl);
+		update(digest, schema);
+
+		final InputStream inputStream = dataset.openStream();
+		try {
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			int count = inputStream.read(buffer);
+			while (count != -1) {
+				digest.update(buffer, 0, count);
+				count = inputStream.read(buffer);
+			}
+		}
+		finally {
+			inputStream.close();
+		}
+
+		final StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	private static void update(MessageDigest digest, String value) throws IOException {
+		if (value != null) {
+			digest.update(value.getBytes(CHARSET));
+		}
+		// Trennzeichen, damit z.B. "ab" + "c" und "a" + "bc" verschieden sind
+		digest.update((byte) 0);
+	}
+
+	private static String baseName(URL dataset) {
+		final String path = dataset.getPath();
+		String name = path.substring(path.lastIndexOf('/') + 1);
+		final int dot = name.lastIndexOf('.');
+		if (dot > 0) {
+			name = name.substring(0, dot);
+		}
+		return name;
+	}
+
+	/**
+	 * Build-Schritt: db.xml in das Cache-Verzeichnis aus db.properties kompilieren
+	 */
+	public static void main(String[] args) throws Exception {
+		final DbConnectionPool pool = DbConnectionPool.getInstance();
+		final PooledConnection conn = pool.borrow();
+		try {
+			compileIfChanged(DbConfig.getXmlFlatDatasetResource(), conn.getConnection(), DbConfig.getSchema(),
+			                 DbConfig.getBatchSize(), DbConfig.getBinaryDatasetDir());
+		}
+		finally {
+			pool.release(conn);
+		}
+	}
+}
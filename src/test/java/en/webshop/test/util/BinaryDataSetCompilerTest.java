@@ -0,0 +1,291 @@
+package en.webshop.test.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * BinaryDataSetCompiler und BinaryDataSetReader ohne Datenbank: Die Spaltentypen
+ * liefern JDBC-Metadaten als Proxy.
+ */
+public class BinaryDataSetCompilerTest {
+	private static final String URL = "jdbc:test:webshop";
+	private static final String SCHEMA = "bincompile";
+	private static final int BATCH_SIZE = 2;
+
+	private static final String DATASET =
+	        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+	        + "<dataset>\n"
+	        + "  <article id=\"1\" name=\"Holz\" price=\"9.99\" created=\"2011-01-02\"/>\n"
+	        + "  <article id=\"2\" name=\"Stein\" price=\"0.50\" created=\"2011-01-03\"/>\n"
+	        + "  <article id=\"3\" name=\"Glas\"/>\n"
+	        + "  <category id=\"10\" name=\"Dimension\"/>\n"
+	        + "  <article id=\"4\" name=\"Kies\" price=\"12.00\" created=\"2011-01-04\"/>\n"
+	        + "</dataset>\n";
+
+	private static final Map<String, Object[][]> COLUMNS = new HashMap<String, Object[][]>();
+
+	static {
+		COLUMNS.put("article", new Object[][] {
+			{ "ID", Types.INTEGER }, { "NAME", Types.VARCHAR }, { "PRICE", Types.DECIMAL }, { "CREATED", Types.DATE }
+		});
+		COLUMNS.put("category", new Object[][] {
+			{ "ID", Types.BIGINT }, { "NAME", Types.VARCHAR }
+		});
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File dataset;
+	private File dir;
+	private Map<String, Object[][]> columns;
+
+	@Before
+	public void createDataset() throws IOException {
+		TableMetadata.clearCache();
+		columns = new HashMap<String, Object[][]>(COLUMNS);
+		dataset = new File(folder.getRoot(), "db.xml");
+		write(dataset, DATASET);
+		dir = new File(folder.getRoot(), "cache");
+	}
+
+	@Test
+	public void compileAndRead() throws IOException, SQLException {
+		final File binary = compile(URL, SCHEMA);
+		assertThat(binary.isFile(), is(true));
+		assertThat(binary.getName().startsWith("db-"), is(true));
+
+		final BinaryDataSetReader reader = new BinaryDataSetReader(binary);
+		assertThat(reader.getTableNames(), is(Arrays.asList("article", "category")));
+
+		final List<DataSegment> segments = new ArrayList<DataSegment>();
+		reader.read(collect(segments));
+		final List<Object[]> articles = rows(segments, "article");
+		assertThat(articles.size(), is(4));
+		assertThat(Arrays.asList(articles.get(0)),
+		           is(Arrays.<Object>asList(1, "Holz", new BigDecimal("9.99"), Date.valueOf("2011-01-02"))));
+		assertThat(articles.get(2)[1], is((Object) "Glas"));
+		assertThat(articles.get(3)[0], is((Object) 4));
+		assertThat(rows(segments, "category").get(0)[0], is((Object) 10L));
+	}
+
+	@Test
+	public void readTable() throws IOException, SQLException {
+		final BinaryDataSetReader reader = new BinaryDataSetReader(compile(URL, SCHEMA));
+
+		final List<DataSegment> articles = new ArrayList<DataSegment>();
+		reader.readTable("article", collect(articles));
+		assertThat(rows(articles, "article").size(), is(4));
+		assertThat(rows(articles, "category").size(), is(0));
+
+		final List<DataSegment> categories = new ArrayList<DataSegment>();
+		reader.readTable("category", collect(categories));
+		assertThat(rows(categories, "category").size(), is(1));
+		assertThat(rows(categories, "category").get(0)[1], is((Object) "Dimension"));
+
+		final List<DataSegment> unknown = new ArrayList<DataSegment>();
+		reader.readTable("unknown", collect(unknown));
+		assertThat(unknown.isEmpty(), is(true));
+	}
+
+	@Test
+	public void recompileAfterChange() throws IOException, SQLException {
+		final File first = compile(URL, SCHEMA);
+		assertThat(compile(URL, SCHEMA), is(first));
+
+		write(dataset, DATASET.replace("Holz", "Eiche"));
+		final File second = compile(URL, SCHEMA);
+		assertThat(second, is(not(first)));
+		assertThat(first.exists(), is(false));
+		assertThat(dir.list().length, is(1));
+
+		final List<DataSegment> segments = new ArrayList<DataSegment>();
+		new BinaryDataSetReader(second).read(collect(segments));
+		assertThat(rows(segments, "article").get(0)[1], is((Object) "Eiche"));
+		// Fehlende Attribute im Flat XML ergeben ein eigenes Segment ohne diese Spalten
+		assertThat(rows(segments, "article").get(2).length, is(2));
+	}
+
+	@Test
+	public void noRecompileWithoutChange() throws IOException, SQLException {
+		final File first = compile(URL, SCHEMA);
+		assertThat(BinaryDataSetReader.readColumnTypes(first).get("category").get("ID"), is(Types.BIGINT));
+
+		first.setLastModified(0);
+		assertThat(compile(URL, SCHEMA), is(first));
+		assertThat(first.lastModified(), is(0L));
+	}
+
+	@Test
+	public void recompileForOtherDatabase() throws IOException, SQLException {
+		final File first = compile(URL, SCHEMA);
+		final File otherUrl = compile("jdbc:test:other", SCHEMA);
+		assertThat(otherUrl, is(not(first)));
+
+		final File otherSchema = compile(URL, SCHEMA + "2");
+		assertThat(otherSchema, is(not(first)));
+		assertThat(otherSchema, is(not(otherUrl)));
+	}
+
+	@Test
+	public void recompileAfterTypeChange() throws IOException, SQLException {
+		final File first = compile(URL, SCHEMA);
+
+		columns.put("article", new Object[][] {
+			{ "ID", Types.INTEGER }, { "NAME", Types.VARCHAR }, { "PRICE", Types.DOUBLE }, { "CREATED", Types.DATE }
+		});
+		TableMetadata.clearCache();
+		first.setLastModified(0);
+		final File second = compile(URL, SCHEMA);
+		// Gleicher Name, weil sich db.xml nicht geaendert hat, aber neu kompiliert
+		assertThat(second, is(first));
+		assertThat(second.lastModified() > 0, is(true));
+		assertThat(BinaryDataSetReader.readColumnTypes(second).get("article").get("PRICE"), is(Types.DOUBLE));
+
+		final List<DataSegment> segments = new ArrayList<DataSegment>();
+		new BinaryDataSetReader(second).read(collect(segments));
+		assertThat(rows(segments, "article").get(0)[2], is((Object) 9.99));
+	}
+
+	@Test
+	public void tableWithoutRows() throws IOException, SQLException {
+		// Wie bei DbUnit: Die Tabelle wird geleert, aber es wird keine Zeile eingefuegt
+		write(dataset, DATASET.replace("<category id=\"10\" name=\"Dimension\"/>", "<category/>"));
+		final BinaryDataSetReader reader = new BinaryDataSetReader(compile(URL, SCHEMA));
+		assertThat(reader.getTableNames(), is(Arrays.asList("article", "category")));
+
+		final List<DataSegment> segments = new ArrayList<DataSegment>();
+		reader.read(collect(segments));
+		assertThat(rows(segments, "article").size(), is(4));
+		assertThat(rows(segments, "category").size(), is(0));
+		for (DataSegment segment : segments) {
+			assertThat(segment.getColumns().length > 0, is(true));
+		}
+	}
+
+	private File compile(String url, String schema) throws IOException, SQLException {
+		return BinaryDataSetCompiler.compileIfChanged(dataset.toURI().toURL(), connection(url, columns), schema,
+		                                              BATCH_SIZE, dir);
+	}
+
+	private static SegmentSource.Sink collect(final List<DataSegment> segments) {
+		return new SegmentSource.Sink() {
+			@Override
+			public void segment(DataSegment segment) {
+				segments.add(segment);
+			}
+		};
+	}
+
+	private static List<Object[]> rows(List<DataSegment> segments, String table) {
+		final List<Object[]> rows = new ArrayList<Object[]>();
+		for (DataSegment segment : segments) {
+			if (segment.getTable().equals(table)) {
+				rows.addAll(segment.getRows());
+			}
+		}
+		return rows;
+	}
+
+	private static void write(File file, String content) throws IOException {
+		final OutputStream outputStream = new FileOutputStream(file);
+		try {
+			outputStream.write(content.getBytes(BinaryDataSetCompiler.CHARSET));
+		}
+		finally {
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Eine Verbindung, die nur die URL und die Spalten pro Tabelle als Metadaten liefert
+	 */
+	private static Connection connection(final String url, final Map<String, Object[][]> tableColumns) {
+		final DatabaseMetaData metaData = proxy(DatabaseMetaData.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("getURL".equals(method.getName())) {
+					return url;
+				}
+				if ("getColumns".equals(method.getName())) {
+					final Object[][] columns = tableColumns.get(args[2]);
+					return resultSet(columns == null ? Collections.<Object[]>emptyList() : Arrays.asList(columns));
+				}
+				if ("getPrimaryKeys".equals(method.getName()) || "getImportedKeys".equals(method.getName())) {
+					return resultSet(Collections.<Object[]>emptyList());
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+
+		return proxy(Connection.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("getMetaData".equals(method.getName())) {
+					return metaData;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	/**
+	 * Ein ResultSet mit COLUMN_NAME und DATA_TYPE
+	 */
+	private static ResultSet resultSet(final List<Object[]> rows) {
+		return proxy(ResultSet.class, new InvocationHandler() {
+			private int row = -1;
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				final String name = method.getName();
+				if ("next".equals(name)) {
+					row++;
+					return row < rows.size();
+				}
+				if ("getString".equals(name) && "COLUMN_NAME".equals(args[0])) {
+					return rows.get(row)[0];
+				}
+				if ("getInt".equals(name) && "DATA_TYPE".equals(args[0])) {
+					return rows.get(row)[1];
+				}
+				if ("close".equals(name)) {
+					return null;
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(BinaryDataSetCompilerTest.class.getClassLoader(),
+		                                        new Class<?>[] {type}, handler));
+	}
+}
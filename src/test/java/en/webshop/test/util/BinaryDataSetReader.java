@@ -0,0 +1,263 @@
+package en.webshop.test.util;
+
+import static en.webshop.test.util.BinaryDataSetCompiler.CHARSET;
+import static en.webshop.test.util.BinaryDataSetCompiler.KIND_BOOLEAN;
+import static en.webshop.test.util.BinaryDataSetCompiler.KIND_BYTES;
+import static en.webshop.test.util.BinaryDataSetCompiler.KIND_DATE;
+import static en.webshop.test.util.BinaryDataSetCompiler.KIND_DECIMAL;
+import static en.webshop.test.util.BinaryDataSetCompiler.KIND_DOUBLE;
+import static en.webshop.test.util.BinaryDataSetCompiler.KIND_INT;
+import static en.webshop.test.util.BinaryDataSetCompiler.KIND_LONG;
+import static en.webshop.test.util.BinaryDataSetCompiler.KIND_TIME;
+import static en.webshop.test.util.BinaryDataSetCompiler.KIND_TIMESTAMP;
+import static en.webshop.test.util.BinaryDataSetCompiler.MAGIC;
+import static en.webshop.test.util.BinaryDataSetCompiler.SEGMENT_START;
+import static en.webshop.test.util.BinaryDataSetCompiler.VERSION;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Liest ein mit BinaryDataSetCompiler erzeugtes Dataset per Memory-Mapping.
+ * Die Werte liegen bereits typisiert vor und werden ohne Konvertierung in
+ * die Segmente uebernommen.
+ */
+public class BinaryDataSetReader implements SegmentSource {
+	private final File file;
+	private MappedByteBuffer mapped;
+	private Map<String, List<Integer>> index;
+
+	public BinaryDataSetReader(File file) {
+		this.file = file;
+	}
+
+	@Override
+	public List<String> getTableNames() throws IOException {
+		final ByteBuffer buffer = header();
+		final int count = buffer.getInt();
+		final List<String> tables = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			tables.add(readString(buffer));
+			skipColumns(buffer);
+		}
+		return tables;
+	}
+
+	/**
+	 * Die Spaltentypen pro Tabelle aus dem Kopf der Datei, ohne sie einzublenden,
+	 * damit die Datei danach ersetzt werden kann
+	 */
+	static Map<String, Map<String, Integer>> readColumnTypes(File file) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Die Datei " + file + " ist kein kompiliertes Dataset der Version " + VERSION);
+			}
+			final int tableCount = in.readInt();
+			final Map<String, Map<String, Integer>> tables = new LinkedHashMap<String, Map<String, Integer>>();
+			for (int i = 0; i < tableCount; i++) {
+				final String table = readString(in);
+				final int columnCount = in.readInt();
+				final Map<String, Integer> columns = new HashMap<String, Integer>();
+				for (int c = 0; c < columnCount; c++) {
+					columns.put(readString(in), in.readInt());
+				}
+				tables.put(table, columns);
+			}
+			return tables;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	@Override
+	public void read(Sink sink) throws IOException, SQLException {
+		final ByteBuffer buffer = header();
+		skipTables(buffer);
+
+		while (buffer.get() == SEGMENT_START) {
+			buffer.getInt();
+			sink.segment(readSegment(buffer));
+		}
+	}
+
+	/**
+	 * Nur die Segmente einer Tabelle lesen. Kann parallel fuer verschiedene
+	 * Tabellen aufgerufen werden.
+	 */
+	public void readTable(String table, Sink sink) throws IOException, SQLException {
+		final List<Integer> offsets = index().get(table);
+		if (offsets == null) {
+			return;
+		}
+
+		final ByteBuffer buffer = mapped.duplicate();
+		for (Integer offset : offsets) {
+			buffer.position(offset);
+			sink.segment(readSegment(buffer));
+		}
+	}
+
+	/**
+	 * Die Positionen der Segmente pro Tabelle. Die Segmente werden dabei anhand
+	 * ihrer Laenge uebersprungen und nicht dekodiert.
+	 */
+	private synchronized Map<String, List<Integer>> index() throws IOException {
+		if (index == null) {
+			final ByteBuffer buffer = header();
+			skipTables(buffer);
+
+			final Map<String, List<Integer>> segments = new HashMap<String, List<Integer>>();
+			while (buffer.get() == SEGMENT_START) {
+				final int length = buffer.getInt();
+				final int offset = buffer.position();
+				final String table = readString(buffer);
+				List<Integer> offsets = segments.get(table);
+				if (offsets == null) {
+					offsets = new ArrayList<Integer>();
+					segments.put(table, offsets);
+				}
+				offsets.add(offset);
+				buffer.position(offset + length);
+			}
+			index = segments;
+		}
+		return index;
+	}
+
+	private DataSegment readSegment(ByteBuffer buffer) throws IOException {
+		final String table = readString(buffer);
+		final int columnCount = buffer.getInt();
+		final String[] columns = new String[columnCount];
+		final int[] sqlTypes = new int[columnCount];
+		final byte[] kinds = new byte[columnCount];
+		for (int c = 0; c < columnCount; c++) {
+			columns[c] = readString(buffer);
+			sqlTypes[c] = buffer.getInt();
+			kinds[c] = buffer.get();
+		}
+
+		final int rowCount = buffer.getInt();
+		final List<Object[]> rows = new ArrayList<Object[]>(rowCount);
+		for (int r = 0; r < rowCount; r++) {
+			rows.add(new Object[columnCount]);
+		}
+
+		final byte[] nulls = new byte[(rowCount + 7) / 8];
+		for (int c = 0; c < columnCount; c++) {
+			buffer.get(nulls);
+			for (int r = 0; r < rowCount; r++) {
+				if ((nulls[r >> 3] & (1 << (r & 7))) == 0) {
+					rows.get(r)[c] = readValue(buffer, kinds[c]);
+				}
+			}
+		}
+
+		return new DataSegment(table, columns, sqlTypes, rows);
+	}
+
+	private static Object readValue(ByteBuffer buffer, byte kind) throws IOException {
+		switch (kind) {
+			case KIND_INT:
+				return buffer.getInt();
+			case KIND_LONG:
+				return buffer.getLong();
+			case KIND_DOUBLE:
+				return buffer.getDouble();
+			case KIND_DECIMAL:
+				final int scale = buffer.getInt();
+				return new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+			case KIND_BOOLEAN:
+				return buffer.get() != 0;
+			case KIND_DATE:
+				return new Date(buffer.getLong());
+			case KIND_TIME:
+				return new Time(buffer.getLong());
+			case KIND_TIMESTAMP:
+				final Timestamp timestamp = new Timestamp(buffer.getLong());
+				timestamp.setNanos(buffer.getInt());
+				return timestamp;
+			case KIND_BYTES:
+				return readBytes(buffer);
+			default:
+				return readString(buffer);
+		}
+	}
+
+	/**
+	 * Die Datei beim ersten Zugriff einblenden und einen Puffer hinter
+	 * MAGIC und VERSION liefern
+	 */
+	private synchronized ByteBuffer header() throws IOException {
+		if (mapped == null) {
+			final RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				final FileChannel channel = raf.getChannel();
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			finally {
+				raf.close();
+			}
+		}
+
+		final ByteBuffer buffer = mapped.duplicate();
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Die Datei " + file + " ist kein kompiliertes Dataset der Version " + VERSION);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Die Tabellen und Spaltentypen im Kopf ueberspringen
+	 */
+	private static void skipTables(ByteBuffer buffer) throws IOException {
+		final int tableCount = buffer.getInt();
+		for (int i = 0; i < tableCount; i++) {
+			readString(buffer);
+			skipColumns(buffer);
+		}
+	}
+
+	private static void skipColumns(ByteBuffer buffer) throws IOException {
+		final int columnCount = buffer.getInt();
+		for (int c = 0; c < columnCount; c++) {
+			readString(buffer);
+			buffer.getInt();
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, CHARSET);
+	}
+
+	private static String readString(ByteBuffer buffer) throws IOException {
+		return new String(readBytes(buffer), CHARSET);
+	}
+
+	private static byte[] readBytes(ByteBuffer buffer) {
+		final byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return bytes;
+	}
+}
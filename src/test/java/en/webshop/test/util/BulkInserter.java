@@ -0,0 +1,277 @@
+package en.webshop.test.util;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fuegt die Zeilen einer Tabelle gebuendelt ein: COPY bei PostgreSQL,
+ * INSERT mit mehreren VALUES-Zeilen bei MySQL und sonst JDBC-Batches
+ * mit addBatch() und executeBatch().
+ */
+public class BulkInserter {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BulkInserter.class);
+
+	private static final String PG_CONNECTION_CLASS = "org.postgresql.PGConnection";
+	// MySQL erlaubt maximal 65535 Platzhalter pro Statement
+	private static final int MYSQL_MAX_PARAMETERS = 65535;
+
+	private final DbDialect dialect;
+	private final int batchSize;
+	private boolean copyAvailable;
+
+	public BulkInserter(DbDialect dialect, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Die Batch-Groesse muss mindestens 1 sein: " + batchSize);
+		}
+		this.dialect = dialect;
+		this.batchSize = batchSize;
+		this.copyAvailable = dialect == DbDialect.POSTGRESQL;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Zeilen mit bereits konvertierten Werten in eine Tabelle einfuegen
+	 */
+	public void insert(PooledConnection conn, String table, String[] columns, int[] sqlTypes, List<Object[]> rows)
+	       throws SQLException {
+		if (rows.isEmpty()) {
+			return;
+		}
+
+		if (copyAvailable) {
+			try {
+				copy(conn.getConnection(), table, columns, rows);
+				return;
+			}
+			catch (ClassNotFoundException e) {
+				LOGGER.warn("COPY ist nicht verfuegbar, es werden JDBC-Batches verwendet: " + e.getMessage());
+				copyAvailable = false;
+			}
+		}
+
+		if (dialect == DbDialect.MYSQL) {
+			insertMultiRow(conn, table, columns, sqlTypes, rows);
+		}
+		else {
+			insertBatch(conn, table, columns, sqlTypes, rows);
+		}
+	}
+
+	private void insertBatch(PooledConnection conn, String table, String[] columns, int[] sqlTypes,
+	                         List<Object[]> rows) throws SQLException {
+		final PreparedStatement stmt = conn.prepare(insertSql(table, columns, 1));
+		stmt.clearBatch();
+		int pending = 0;
+		for (Object[] row : rows) {
+			for (int i = 0; i < columns.length; i++) {
+				bind(stmt, i + 1, sqlTypes[i], row[i]);
+			}
+			stmt.addBatch();
+			pending++;
+			if (pending == batchSize) {
+				stmt.executeBatch();
+				pending = 0;
+			}
+		}
+		if (pending > 0) {
+			stmt.executeBatch();
+		}
+	}
+
+	private void insertMultiRow(PooledConnection conn, String table, String[] columns, int[] sqlTypes,
+	                            List<Object[]> rows) throws SQLException {
+		final int rowsPerStatement = Math.max(1, Math.min(batchSize, MYSQL_MAX_PARAMETERS / columns.length));
+		for (int offset = 0; offset < rows.size(); offset += rowsPerStatement) {
+			final int count = Math.min(rowsPerStatement, rows.size() - offset);
+			final PreparedStatement stmt = conn.prepare(insertSql(table, columns, count));
+			int index = 1;
+			for (int r = offset; r < offset + count; r++) {
+				final Object[] row = rows.get(r);
+				for (int i = 0; i < columns.length; i++) {
+					bind(stmt, index++, sqlTypes[i], row[i]);
+				}
+			}
+			stmt.executeUpdate();
+		}
+	}
+
+	/**
+	 * COPY ... FROM STDIN ueber die CopyManager-API des PostgreSQL-Treibers.
+	 * Der Treiber wird per Reflection angesprochen, damit er nur zur Laufzeit
+	 * vorhanden sein muss.
+	 */
+	private static void copy(Connection conn, String table, String[] columns, List<Object[]> rows)
+	        throws SQLException, ClassNotFoundException {
+		final StringBuilder data = new StringBuilder(rows.size() * columns.length * 16);
+		for (Object[] row : rows) {
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					data.append('\t');
+				}
+				appendCopyValue(data, row[i]);
+			}
+			data.append('\n');
+		}
+
+		final StringBuilder sql = new StringBuilder("COPY ").append(table).append(" (");
+		appendColumns(sql, columns);
+		sql.append(") FROM STDIN");
+
+		final Class<?> pgConnectionClass = Class.forName(PG_CONNECTION_CLASS);
+		try {
+			final Object pgConnection = pgConnectionClass.isInstance(conn) ? conn : conn.unwrap(pgConnectionClass);
+			final Object copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(pgConnection);
+			final Method copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+			copyIn.invoke(copyManager, sql.toString(), new StringReader(data.toString()));
+		}
+		catch (InvocationTargetException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw new SQLException("COPY fuer die Tabelle " + table + " ist fehlgeschlagen", cause);
+		}
+		catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Einen Wert im Textformat von COPY anhaengen: \N fuer NULL und Escaping
+	 * von Backslash, Tabulator und Zeilenumbruechen
+	 */
+	private static void appendCopyValue(StringBuilder data, Object value) {
+		if (value == null) {
+			data.append("\\N");
+			return;
+		}
+		if (value instanceof byte[]) {
+			data.append("\\\\x");
+			for (byte b : (byte[]) value) {
+				data.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return;
+		}
+
+		final String text = value.toString();
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch (c) {
+				case '\\':
+					data.append("\\\\");
+					break;
+				case '\t':
+					data.append("\\t");
+					break;
+				case '\n':
+					data.append("\\n");
+					break;
+				case '\r':
+					data.append("\\r");
+					break;
+				default:
+					data.append(c);
+			}
+		}
+	}
+
+	static String insertSql(String table, String[] columns, int rowCount) {
+		final StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+		appendColumns(sql, columns);
+		sql.append(") VALUES ");
+		for (int r = 0; r < rowCount; r++) {
+			if (r > 0) {
+				sql.append(',');
+			}
+			sql.append('(');
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					sql.append(',');
+				}
+				sql.append('?');
+			}
+			sql.append(')');
+		}
+		return sql.toString();
+	}
+
+	private static void appendColumns(StringBuilder sql, String[] columns) {
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sql.append(',');
+			}
+			sql.append(columns[i]);
+		}
+	}
+
+	/**
+	 * Einen Wert mit dem zum SQL-Typ passenden Setter binden
+	 */
+	static void bind(PreparedStatement stmt, int index, int sqlType, Object value) throws SQLException {
+		if (value == null) {
+			stmt.setNull(index, sqlType);
+			return;
+		}
+
+		switch (sqlType) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+				stmt.setBoolean(index, (Boolean) value);
+				break;
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				stmt.setInt(index, ((Number) value).intValue());
+				break;
+			case Types.BIGINT:
+				stmt.setLong(index, ((Number) value).longValue());
+				break;
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				stmt.setDouble(index, ((Number) value).doubleValue());
+				break;
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				stmt.setBigDecimal(index, (BigDecimal) value);
+				break;
+			case Types.DATE:
+				stmt.setDate(index, (Date) value);
+				break;
+			case Types.TIME:
+				stmt.setTime(index, (Time) value);
+				break;
+			case Types.TIMESTAMP:
+				stmt.setTimestamp(index, (Timestamp) value);
+				break;
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				stmt.setBytes(index, (byte[]) value);
+				break;
+			default:
+				stmt.setString(index, value.toString());
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package en.webshop.test.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * JDBC-Treiber, der an den eigentlichen Treiber delegiert und pro Thread die
+ * ausgefuehrten Anweisungen, die gelesenen Zeilen und die Zeit in JdbcStatistics
+ * zaehlt. Aus jdbc:counting:postgresql:jbossdb wird jdbc:postgresql:jbossdb.
+ *
+ * Fuer die Tests wird die Datasource im JBoss mit diesem Treiber und einer URL mit
+ * jdbc:counting: konfiguriert (src/test/jboss/webshop-counting-ds.xml). CountingDriver
+ * und JdbcStatistics muessen dazu im lib-Verzeichnis des Servers liegen und werden
+ * nicht in test.ear verpackt. Beides installiert src/test/jboss/install-counting-driver.sh.
+ */
+public class CountingDriver implements Driver {
+	private static final String PREFIX = "jdbc:counting:";
+	private static final String JDBC = "jdbc:";
+
+	static {
+		try {
+			DriverManager.registerDriver(new CountingDriver());
+		}
+		catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith(PREFIX);
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)) {
+			return null;
+		}
+		final Connection conn = DriverManager.getConnection(targetUrl(url), info);
+		JdbcStatistics.activate();
+		return proxy(Connection.class, new ConnectionHandler(conn));
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+		return DriverManager.getDriver(targetUrl(url)).getPropertyInfo(targetUrl(url), info);
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	// Ab Java 7 Bestandteil von Driver, deshalb ohne @Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	private static String targetUrl(String url) {
+		return JDBC + url.substring(PREFIX.length());
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(CountingDriver.class.getClassLoader(), new Class<?>[] {type},
+		                                        handler));
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Statement, PreparedStatement und CallableStatement werden ebenfalls umhuellt
+	 */
+	private static class ConnectionHandler implements InvocationHandler {
+		private final Connection conn;
+
+		ConnectionHandler(Connection conn) {
+			this.conn = conn;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final Object result = CountingDriver.invoke(conn, method, args);
+			if (result instanceof Statement) {
+				return proxy(method.getReturnType(), new StatementHandler(result));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Jeder Aufruf von execute* zaehlt als eine Anweisung, auch executeBatch()
+	 */
+	private static class StatementHandler implements InvocationHandler {
+		private static final String EXECUTE = "execute";
+
+		private final Object stmt;
+
+		StatementHandler(Object stmt) {
+			this.stmt = stmt;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final boolean execute = method.getName().startsWith(EXECUTE);
+			final long start = execute ? System.nanoTime() : 0;
+			final Object result;
+			try {
+				result = CountingDriver.invoke(stmt, method, args);
+			}
+			finally {
+				if (execute) {
+					JdbcStatistics.statement(System.nanoTime() - start);
+				}
+			}
+			if (result instanceof ResultSet) {
+				return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Jedes next() mit Ergebnis true zaehlt als gelesene Zeile
+	 */
+	private static class ResultSetHandler implements InvocationHandler {
+		private static final String NEXT = "next";
+
+		private final ResultSet resultSet;
+
+		ResultSetHandler(ResultSet resultSet) {
+			this.resultSet = resultSet;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final Object result = CountingDriver.invoke(resultSet, method, args);
+			if (NEXT.equals(method.getName()) && Boolean.TRUE.equals(result)) {
+				JdbcStatistics.row();
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package en.webshop.test.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * CountingDriver vor einem Treiber fuer jdbc:fake:, dessen Verbindung, Statements
+ * und ResultSets Proxies sind: Jedes execute* zaehlt als Anweisung, auch
+ * executeBatch() fuer beliebig viele Zeilen, und jedes next() mit true als Zeile.
+ */
+public class CountingDriverTest {
+	private static final String URL = "jdbc:counting:fake:webshop";
+	private static final String FAKE_PREFIX = "jdbc:fake:";
+	private static final int ROWS = 3;
+
+	private final FakeDriver fakeDriver = new FakeDriver();
+	private Connection conn;
+
+	@Before
+	public void connect() throws SQLException {
+		JdbcStatistics.deactivate();
+		DriverManager.registerDriver(fakeDriver);
+		conn = new CountingDriver().connect(URL, new Properties());
+	}
+
+	@After
+	public void deregister() throws SQLException {
+		DriverManager.deregisterDriver(fakeDriver);
+		JdbcStatistics.deactivate();
+	}
+
+	@Test
+	public void acceptsOnlyCountingUrls() throws SQLException {
+		final CountingDriver driver = new CountingDriver();
+		assertThat(driver.acceptsURL(URL), is(true));
+		assertThat(driver.acceptsURL("jdbc:fake:webshop"), is(false));
+		assertThat(driver.connect("jdbc:fake:webshop", new Properties()), is(nullValue()));
+		assertThat(fakeDriver.url, is("jdbc:fake:webshop"));
+	}
+
+	@Test
+	public void activate() {
+		assertThat(JdbcStatistics.isActive(), is(true));
+	}
+
+	@Test
+	public void queryAndRows() throws SQLException {
+		JdbcStatistics.reset();
+		final Statement stmt = conn.createStatement();
+		final ResultSet resultSet = stmt.executeQuery("SELECT * FROM article");
+		int rows = 0;
+		while (resultSet.next()) {
+			rows++;
+		}
+		resultSet.close();
+		stmt.close();
+
+		assertThat(rows, is(ROWS));
+		final JdbcStatistics.Counter counter = JdbcStatistics.reset();
+		assertThat(counter.getStatements(), is(1));
+		assertThat(counter.getRows(), is((long) ROWS));
+	}
+
+	@Test
+	public void batch() throws SQLException {
+		JdbcStatistics.reset();
+		final PreparedStatement stmt = conn.prepareStatement("INSERT INTO article (id) VALUES (?)");
+		for (int i = 0; i < ROWS; i++) {
+			stmt.setInt(1, i);
+			stmt.addBatch();
+		}
+		stmt.executeBatch();
+		stmt.executeUpdate();
+		stmt.close();
+
+		final JdbcStatistics.Counter counter = JdbcStatistics.reset();
+		assertThat(counter.getStatements(), is(2));
+		assertThat(counter.getRows(), is(0L));
+	}
+
+	@Test
+	public void failedStatement() throws SQLException {
+		JdbcStatistics.reset();
+		final Statement stmt = conn.createStatement();
+		try {
+			stmt.execute("FAIL");
+			fail();
+		}
+		catch (SQLException e) {
+			assertThat(e.getMessage(), is("FAIL"));
+		}
+		assertThat(JdbcStatistics.reset().getStatements(), is(1));
+	}
+
+	/**
+	 * Liefert fuer jdbc:fake: eine Verbindung als Proxy
+	 */
+	private static class FakeDriver implements Driver {
+		private String url;
+
+		@Override
+		public Connection connect(String connectUrl, Properties info) {
+			url = connectUrl;
+			if (!acceptsURL(connectUrl)) {
+				return null;
+			}
+			return proxy(Connection.class, new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					final String name = method.getName();
+					if ("createStatement".equals(name)) {
+						return statement(Statement.class);
+					}
+					if ("prepareStatement".equals(name)) {
+						return statement(PreparedStatement.class);
+					}
+					return null;
+				}
+			});
+		}
+
+		@Override
+		public boolean acceptsURL(String acceptUrl) {
+			return acceptUrl.startsWith(FAKE_PREFIX);
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String propertyUrl, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		// Ab Java 7 Bestandteil von Driver, deshalb ohne @Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+	}
+
+	private static <T extends Statement> T statement(Class<T> type) {
+		return proxy(type, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+				final String name = method.getName();
+				if ("executeQuery".equals(name)) {
+					return resultSet();
+				}
+				if ("execute".equals(name) && "FAIL".equals(args[0])) {
+					throw new SQLException("FAIL");
+				}
+				if ("executeBatch".equals(name)) {
+					return new int[ROWS];
+				}
+				if ("executeUpdate".equals(name)) {
+					return 1;
+				}
+				if ("execute".equals(name)) {
+					return false;
+				}
+				return null;
+			}
+		});
+	}
+
+	private static ResultSet resultSet() {
+		return proxy(ResultSet.class, new InvocationHandler() {
+			private int row;
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("next".equals(method.getName())) {
+					row++;
+					return row <= ROWS;
+				}
+				return null;
+			}
+		});
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(CountingDriverTest.class.getClassLoader(), new Class<?>[] {type},
+		                                        handler));
+	}
+}
@@ -0,0 +1,37 @@
+package en.webshop.test.util;
+
+import java.util.List;
+
+/**
+ * Aufeinander folgende Zeilen einer Tabelle mit denselben Spalten und
+ * bereits in Java-Typen konvertierten Werten
+ */
+public class DataSegment {
+	private final String table;
+	private final String[] columns;
+	private final int[] sqlTypes;
+	private final List<Object[]> rows;
+
+	public DataSegment(String table, String[] columns, int[] sqlTypes, List<Object[]> rows) {
+		this.table = table;
+		this.columns = columns;
+		this.sqlTypes = sqlTypes;
+		this.rows = rows;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public String[] getColumns() {
+		return columns;
+	}
+
+	public int[] getSqlTypes() {
+		return sqlTypes;
+	}
+
+	public List<Object[]> getRows() {
+		return rows;
+	}
+}
@@ -0,0 +1,169 @@
+package en.webshop.test.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Die DB-Einstellungen aus db.properties fuer DbReloadImpl und die
+ * anderen Hilfsklassen, die direkt per JDBC auf die DB zugreifen
+ */
+public final class DbConfig {
+	private static final String PROPSFILE = "db.properties";
+	private static final String URL_DEFAULT = "jdbc:postgresql:jbossdb";
+	private static final String SCHEMA_DEFAULT = "webshop";
+	private static final String USERNAME_DEFAULT = "webshop";
+	private static final String XML_FLAT_DATASET_DEFAULT = "db.xml";
+	private static final String BATCH_SIZE_DEFAULT = "1000";
+	private static final String LOADER_DEFAULT = "binary";
+	private static final String BINARY_DATASET_DIR_DEFAULT = "target/dataset-cache";
+	private static final String SNAPSHOT_PREFIX_DEFAULT = "snap_";
+	private static final String POOL_SIZE_DEFAULT = "4";
+	private static final String RELOAD_PARALLELISM_DEFAULT = "1";
+
+	private static final String URL;
+	private static final String SCHEMA;
+	private static final String USERNAME;
+	private static final String PASSWORD;
+	private static final String XML_FLAT_DATASET;
+	private static final int BATCH_SIZE;
+	private static final String LOADER;
+	private static final String SNAPSHOT_PREFIX;
+	private static final File BINARY_DATASET_DIR;
+	private static final int POOL_SIZE;
+	private static final int RELOAD_PARALLELISM;
+	private static final DbDialect DIALECT;
+
+	static {
+		/**
+		 * Properties-Datei einlesen
+		 * @return
+		 */
+		final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		final InputStream inputStream = classLoader.getResourceAsStream(PROPSFILE);
+		Properties props = new Properties();
+		try {
+			props.load(inputStream);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		finally {
+			try {
+				if (inputStream != null)
+					inputStream.close();
+			}
+			catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Properties fuer DB-Connection einlesen
+		 * @return
+		 */
+		URL = props.getProperty("url", URL_DEFAULT);
+		SCHEMA = props.getProperty("schema", SCHEMA_DEFAULT);
+		USERNAME = props.getProperty("username", USERNAME_DEFAULT);
+		PASSWORD = props.getProperty("password");
+		XML_FLAT_DATASET = props.getProperty("xmlDataset", XML_FLAT_DATASET_DEFAULT);
+		BATCH_SIZE = Integer.parseInt(props.getProperty("batchSize", BATCH_SIZE_DEFAULT));
+		LOADER = props.getProperty("loader", LOADER_DEFAULT);
+		SNAPSHOT_PREFIX = props.getProperty("snapshotPrefix", SNAPSHOT_PREFIX_DEFAULT);
+		POOL_SIZE = Integer.parseInt(props.getProperty("poolSize", POOL_SIZE_DEFAULT));
+		RELOAD_PARALLELISM = Integer.parseInt(props.getProperty("reloadParallelism", RELOAD_PARALLELISM_DEFAULT));
+		BINARY_DATASET_DIR = new File(props.getProperty("binaryDatasetDir", BINARY_DATASET_DIR_DEFAULT));
+
+		/**
+		 * Name der Treiber-Klasse setzen
+		 * @return
+		 */
+		DIALECT = DbDialect.fromUrl(URL);
+		final String driver = DIALECT.getDriverClass(URL);
+
+		/**
+		 * Treiber-Klasse laden, um spaeter eine JDBC-Verbindung zu oeffnen
+		 * @return
+		 */
+		try {
+			Class.forName(driver);
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private DbConfig() {
+	}
+
+	public static String getUrl() {
+		return URL;
+	}
+
+	public static String getSchema() {
+		return SCHEMA;
+	}
+
+	public static DbDialect getDialect() {
+		return DIALECT;
+	}
+
+	public static String getXmlFlatDataset() {
+		return XML_FLAT_DATASET;
+	}
+
+	/**
+	 * Das Flat-XML-Dataset als Ressource im Classpath
+	 */
+	public static URL getXmlFlatDatasetResource() {
+		final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		return cl.getResource(XML_FLAT_DATASET);
+	}
+
+	public static int getBatchSize() {
+		return BATCH_SIZE;
+	}
+
+	public static String getLoader() {
+		return LOADER;
+	}
+
+	public static String getSnapshotPrefix() {
+		return SNAPSHOT_PREFIX;
+	}
+
+	/**
+	 * Maximale Anzahl Verbindungen in DbConnectionPool
+	 */
+	public static int getPoolSize() {
+		return POOL_SIZE;
+	}
+
+	/**
+	 * Anzahl Threads fuer ParallelDataLoader, 0 fuer die Anzahl Prozessoren. Der
+	 * Default 1 laedt atomar mit StreamingDataLoader.
+	 */
+	public static int getReloadParallelism() {
+		return RELOAD_PARALLELISM;
+	}
+
+	/**
+	 * Verzeichnis fuer die mit BinaryDataSetCompiler kompilierten Datasets
+	 */
+	public static File getBinaryDatasetDir() {
+		return BINARY_DATASET_DIR;
+	}
+
+	/**
+	 * Eine neue JDBC-Verbindung oeffnen. Die Hilfsklassen verwenden stattdessen
+	 * DbConnectionPool.
+	 */
+	public static Connection openConnection() throws SQLException {
+		return DriverManager.getConnection(URL, USERNAME, PASSWORD);
+	}
+}
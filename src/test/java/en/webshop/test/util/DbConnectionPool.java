@@ -0,0 +1,147 @@
+package en.webshop.test.util;
+
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Kleiner, beschraenkter Pool mit JDBC-Verbindungen fuer das Neuladen der DB
+ * und die anderen Hilfsklassen mit direktem JDBC-Zugriff. Die Verbindungen werden
+ * erst bei Bedarf geoeffnet und beim Beenden der JVM geschlossen.
+ *
+ * Benutzung:
+ * <pre>
+ * final PooledConnection conn = DbConnectionPool.getInstance().borrow();
+ * try {
+ *     ...
+ * }
+ * finally {
+ *     DbConnectionPool.getInstance().release(conn);
+ * }
+ * </pre>
+ */
+public final class DbConnectionPool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DbConnectionPool.class);
+
+	private static DbConnectionPool instance;
+
+	private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<PooledConnection>();
+	private final Semaphore permits;
+	private final int maxSize;
+
+	private DbConnectionPool(int maxSize) {
+		this.maxSize = maxSize;
+		this.permits = new Semaphore(maxSize, true);
+	}
+
+	public static synchronized DbConnectionPool getInstance() {
+		if (instance == null) {
+			instance = new DbConnectionPool(DbConfig.getPoolSize());
+			Runtime.getRuntime().addShutdownHook(new Thread("DbConnectionPool-shutdown") {
+				@Override
+				public void run() {
+					instance.close();
+				}
+			});
+		}
+		return instance;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Eine Verbindung ausleihen. Falls bereits maxSize Verbindungen ausgeliehen sind,
+	 * wird gewartet, bis eine zurueckgegeben wird.
+	 */
+	public PooledConnection borrow() throws SQLException {
+		try {
+			permits.acquire();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Das Warten auf eine freie Verbindung wurde unterbrochen", e);
+		}
+
+		return take();
+	}
+
+	/**
+	 * Eine Verbindung ausleihen und hoechstens timeout lang auf eine freie warten
+	 * @return Die Verbindung oder null, falls keine Verbindung frei wurde
+	 */
+	public PooledConnection borrow(long timeout, TimeUnit unit) throws SQLException {
+		try {
+			if (!permits.tryAcquire(timeout, unit)) {
+				return null;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Das Warten auf eine freie Verbindung wurde unterbrochen", e);
+		}
+
+		return take();
+	}
+
+	/**
+	 * Eine freie oder neue Verbindung nach dem Erwerb eines Permits
+	 */
+	private PooledConnection take() throws SQLException {
+		try {
+			PooledConnection conn = idle.poll();
+			while (conn != null && conn.isClosed()) {
+				conn.close();
+				conn = idle.poll();
+			}
+			if (conn == null) {
+				conn = new PooledConnection(DbConfig.openConnection());
+				LOGGER.debug("Neue Verbindung zu " + DbConfig.getUrl());
+			}
+			return conn;
+		}
+		catch (SQLException e) {
+			permits.release();
+			throw e;
+		}
+		catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Eine ausgeliehene Verbindung zurueckgeben. Offene Transaktionen werden
+	 * zurueckgerollt.
+	 */
+	public void release(PooledConnection conn) {
+		try {
+			conn.reset();
+			idle.add(conn);
+		}
+		catch (SQLException e) {
+			LOGGER.warn("Die Verbindung wird verworfen: " + e.getMessage());
+			conn.close();
+		}
+		finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Alle freien Verbindungen schliessen
+	 */
+	public void close() {
+		PooledConnection conn = idle.poll();
+		while (conn != null) {
+			conn.close();
+			conn = idle.poll();
+		}
+	}
+}
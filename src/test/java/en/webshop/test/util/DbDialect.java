@@ -0,0 +1,84 @@
+package en.webshop.test.util;
+
+/**
+ * Die unterstuetzten Datenbanken, ermittelt anhand der JDBC-URL aus db.properties
+ */
+public enum DbDialect {
+	POSTGRESQL("postgres", "org.postgresql.Driver"),
+	MYSQL("mysql", "com.mysql.jdbc.Driver"),
+	ORACLE("oracle", "oracle.jdbc.OracleDriver"),
+	SQLSERVER("sqlserver", "com.microsoft.sqlserver.jdbc.SQLServerDriver"),
+	DB2("db2", "com.ibm.db2.jcc.DB2Driver"),
+	HSQLDB("jdbc:hsqldb", "org.hsqldb.jdbcDriver"),
+	DERBY("jdbc:derby:", "org.apache.derby.jdbc.ClientDriver");
+
+	// Derby ohne Host und Port, d.h. jdbc:derby:<db> statt jdbc:derby://<host>/<db>
+	private static final String DERBY_EMBEDDED_DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
+	private static final String DERBY_CLIENT_URL = "jdbc:derby://";
+
+	private final String urlFragment;
+	private final String driverClass;
+
+	private DbDialect(String urlFragment, String driverClass) {
+		this.urlFragment = urlFragment;
+		this.driverClass = driverClass;
+	}
+
+	/**
+	 * Die Treiber-Klasse fuer die JDBC-URL. Fuer Derby gibt es je nach URL den
+	 * Client- oder den Embedded-Treiber.
+	 */
+	public String getDriverClass(String url) {
+		if (this == DERBY && !url.contains(DERBY_CLIENT_URL)) {
+			return DERBY_EMBEDDED_DRIVER;
+		}
+		return driverClass;
+	}
+
+	/**
+	 * Ob DbUnit die Tabellennamen im Dataset mit Gross-/Kleinschreibung vergleichen muss
+	 */
+	public boolean isCaseSensitiveTableNames() {
+		switch (this) {
+			case POSTGRESQL:
+				return true;
+			case MYSQL:
+			case DB2:
+				return System.getProperty("os.name").contains("Linux");
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * SQL, um eine leere Tabelle mit denselben Spalten wie eine vorhandene Tabelle anzulegen
+	 */
+	public String createEmptyCopySql(String target, String source) {
+		switch (this) {
+			case HSQLDB:
+			case DB2:
+				return "CREATE TABLE " + target + " AS (SELECT * FROM " + source + ") WITH NO DATA";
+			case DERBY:
+				return "CREATE TABLE " + target + " AS SELECT * FROM " + source + " WITH NO DATA";
+			case SQLSERVER:
+				return "SELECT * INTO " + target + " FROM " + source + " WHERE 1 = 0";
+			default:
+				return "CREATE TABLE " + target + " AS SELECT * FROM " + source + " WHERE 1 = 0";
+		}
+	}
+
+	/**
+	 * Die Datenbank zu einer JDBC-URL ermitteln
+	 * @throws IllegalStateException falls die URL nicht unterstuetzt wird
+	 */
+	public static DbDialect fromUrl(String url) {
+		if (url != null) {
+			for (DbDialect dialect : values()) {
+				if (url.contains(dialect.urlFragment)) {
+					return dialect;
+				}
+			}
+		}
+		throw new IllegalStateException("Die Datenbank-URL " + url + " wird nicht unterstuetzt");
+	}
+}
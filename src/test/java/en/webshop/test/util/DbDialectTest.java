@@ -0,0 +1,32 @@
+package en.webshop.test.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Die Datenbank und die Treiber-Klasse zur JDBC-URL aus db.properties
+ */
+public class DbDialectTest {
+	@Test
+	public void derbyClient() {
+		final String url = "jdbc:derby://localhost:1527/webshop";
+		assertThat(DbDialect.fromUrl(url), is(DbDialect.DERBY));
+		assertThat(DbDialect.DERBY.getDriverClass(url), is("org.apache.derby.jdbc.ClientDriver"));
+	}
+
+	@Test
+	public void derbyEmbedded() {
+		final String url = "jdbc:derby:target/webshop;create=true";
+		assertThat(DbDialect.fromUrl(url), is(DbDialect.DERBY));
+		assertThat(DbDialect.DERBY.getDriverClass(url), is("org.apache.derby.jdbc.EmbeddedDriver"));
+	}
+
+	@Test
+	public void postgres() {
+		final String url = "jdbc:postgresql:jbossdb";
+		assertThat(DbDialect.fromUrl(url), is(DbDialect.POSTGRESQL));
+		assertThat(DbDialect.POSTGRESQL.getDriverClass(url), is("org.postgresql.Driver"));
+	}
+}
@@ -3,188 +3,114 @@ package en.webshop.test.util;
 
 import static org.dbunit.operation.DatabaseOperation.CLEAN_INSERT;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.util.Properties;
+import java.io.File;
 
-import org.dbunit.database.DatabaseConfig;
-import org.dbunit.database.DatabaseConnection;
 import org.dbunit.database.IDatabaseConnection;
-import org.dbunit.dataset.datatype.DefaultDataTypeFactory;
 import org.dbunit.dataset.xml.FlatXmlDataSet;
 import org.dbunit.dataset.xml.FlatXmlDataSetBuilder;
-import org.dbunit.ext.db2.Db2Connection;
-import org.dbunit.ext.hsqldb.HsqldbConnection;
 import org.dbunit.ext.mssql.InsertIdentityOperation;
-import org.dbunit.ext.mssql.MsSqlConnection;
-import org.dbunit.ext.mysql.MySqlConnection;
-import org.dbunit.ext.oracle.OracleConnection;
-import org.dbunit.ext.postgresql.PostgresqlDataTypeFactory;
 import org.dbunit.operation.DatabaseOperation;
 
 
 public class DbReloadImpl implements DbReload {
-	private static final String PROPSFILE = "db.properties";
-	private static final String URL;
-	private static final String URL_DEFAULT = "jdbc:postgresql:jbossdb";
-	private static final String SCHEMA;
-	private static final String SCHEMA_DEFAULT = "webshop";
-	private static final String USERNAME;
-	private static final String USERNAME_DEFAULT = "webshop";
-	private static final String PASSWORD;
-	private static final String XML_FLAT_DATASET;
-	private static final String XML_FLAT_DATASET_DEFAULT = "db.xml";
+	private static final String URL = DbConfig.getUrl();
+	private static final String SCHEMA = DbConfig.getSchema();
+	private static final String LOADER_DBUNIT = "dbunit";
+	private static final String LOADER_BINARY = "binary";
+	private static final DbDialect DIALECT = DbConfig.getDialect();
 	
 	private static boolean dbReloaded = false;
 	
-	static {
-		/**
-		 * Properties-Datei einlesen
-		 * @return
-		 */
-		final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-		final InputStream inputStream = classLoader.getResourceAsStream(PROPSFILE);
-		Properties props = new Properties();
-		try {
-			props.load(inputStream);
+	/**
+	 */
+	@Override
+	public void reload() throws Exception {
+		if (dbReloaded) {
+			return;
 		}
-		catch (IOException e) {
-			throw new IllegalStateException(e);
+		
+		final DbConnectionPool pool = DbConnectionPool.getInstance();
+		final PooledConnection conn = pool.borrow();
+		try {
+			load(conn);
 		}
 		finally {
-			try {
-				if (inputStream != null)
-					inputStream.close();
-			}
-			catch (IOException e) {
-				throw new IllegalStateException(e);
-			}
+			pool.release(conn);
 		}
 		
-		/**
-		 * Properties fuer DB-Connection einlesen
-		 * @return
-		 */
-		URL = props.getProperty("url", URL_DEFAULT);
-		SCHEMA = props.getProperty("schema", SCHEMA_DEFAULT);
-		USERNAME = props.getProperty("username", USERNAME_DEFAULT);
-		PASSWORD = props.getProperty("password");
-		XML_FLAT_DATASET = props.getProperty("xmlDataset", XML_FLAT_DATASET_DEFAULT);
+		dbReloaded = true;
 		
+		System.out.println("Die Datenbank " + URL + " wurde neu geladen");
+	}
+	
+	/**
+	 * Alle Tabellen des Datasets ueber die uebergebene Verbindung neu laden,
+	 * unabhaengig davon, ob die DB in dieser JVM bereits geladen wurde
+	 */
+	static void load(PooledConnection conn) throws Exception {
 		/**
-		 * Name der Treiber-Klasse setzen
+		 * Fuer SQL Server wird weiterhin DbUnit verwendet, weil dort ein spezieller
+		 * INSERT-Modus fuer IDENTITY-Spalten notwendig ist
 		 * @return
 		 */
-		String driver;
-		if (URL.contains("postgres")) {
-			driver = "org.postgresql.Driver"; 
-		}
-		else if (URL.contains("mysql")) {
-			driver = "com.mysql.jdbc.Driver"; 
-		}
-		else if (URL.contains("oracle")) {
-			driver = "oracle.jdbc.OracleDriver";
-		}
-		else if (URL.contains("sqlserver")) {
-			driver = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
-		}
-		else if (URL.contains("db2")) {
-			driver = "com.ibm.db2.jcc.DB2Driver";
-		}
-		else if (URL.contains("jdbc:hsqldb")) {
-			driver = "org.hsqldb.jdbcDriver";
+		if (LOADER_DBUNIT.equals(DbConfig.getLoader()) || DIALECT == DbDialect.SQLSERVER) {
+			reloadWithDbUnit(conn);
 		}
 		else {
-			throw new IllegalStateException("Die Datenbank-URL " + URL + " wird nicht unterstuetzt");
-		}
-		
-		/**
-		 * Treiber-Klasse laden, um spaeter eine JDBC-Verbindung zu oeffnen
-		 * @return
-		 */
-		try {
-			Class.forName(driver);
-		}
-		catch (ClassNotFoundException e) {
-			throw new IllegalStateException(e);
+			final int batchSize = DbConfig.getBatchSize();
+			SegmentSource source;
+			if (LOADER_BINARY.equals(DbConfig.getLoader())) {
+				/**
+				 * db.xml bei Bedarf kompilieren und dann ohne XML-Parser laden
+				 * @return
+				 */
+				final File binary = BinaryDataSetCompiler.compileIfChanged(DbConfig.getXmlFlatDatasetResource(),
+				                                                           conn.getConnection(), SCHEMA, batchSize,
+				                                                           DbConfig.getBinaryDatasetDir());
+				final BinaryDataSetReader reader = new BinaryDataSetReader(binary);
+				
+				/**
+				 * Unabhaengige Tabellen parallel auf mehreren Verbindungen einfuegen, nur mit
+				 * reloadParallelism ungleich 1, weil das parallele Laden nicht atomar ist
+				 * @return
+				 */
+				final DbConnectionPool pool = DbConnectionPool.getInstance();
+				final int parallelism = DbConfig.getReloadParallelism() > 0
+				                        ? DbConfig.getReloadParallelism()
+				                        : ParallelDataLoader.defaultParallelism(pool);
+				if (parallelism > 1) {
+					new ParallelDataLoader(reader, pool, DIALECT, SCHEMA, batchSize, parallelism).load(conn);
+					return;
+				}
+				source = reader;
+			}
+			else {
+				source = new FlatXmlSegmentSource(DbConfig.getXmlFlatDatasetResource(), conn.getConnection(),
+				                                  SCHEMA, batchSize);
+			}
+			new StreamingDataLoader(source, DIALECT, batchSize).load(conn);
 		}
 	}
 	
 	/**
+	 * Neuladen mit DatabaseOperation.CLEAN_INSERT von DbUnit. Die DbUnit-Verbindung
+	 * gehoert zur Verbindung aus dem Pool und wird deshalb nicht geschlossen.
 	 */
-	@Override
-	public void reload() throws Exception {
-		if (dbReloaded) {
-			return;
-		}
-		
-		Connection jdbcConn = null;
-		IDatabaseConnection dbunitConn = null;
-		try {
-			jdbcConn = DriverManager.getConnection(URL, USERNAME, PASSWORD);
-			
-			boolean caseSensitiveTableNames = false;
-			if (URL.contains("postgres")) {
-				dbunitConn = new DatabaseConnection(jdbcConn, SCHEMA);
-				dbunitConn.getConfig().setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, new PostgresqlDataTypeFactory());
-				caseSensitiveTableNames = true;
-			}
-			else if (URL.contains("mysql")) {
-				dbunitConn = new MySqlConnection(jdbcConn, null);
-				if (System.getProperty("os.name").contains("Linux")) {
-					caseSensitiveTableNames = true;
-				}
-			}
-			else if (URL.contains("oracle")) {
-				dbunitConn = new OracleConnection(jdbcConn, SCHEMA);
-			}
-			else if (URL.contains("sqlserver")) {
-				dbunitConn = new MsSqlConnection(jdbcConn, SCHEMA);
-			}
-			else if (URL.contains("db2")) {
-				dbunitConn = new Db2Connection(jdbcConn, SCHEMA);
-				if (System.getProperty("os.name").contains("Linux")) {
-					caseSensitiveTableNames = true;
-				}
-			}
-			else if (URL.contains("jdbc:hsqldb")) {
-				dbunitConn = new HsqldbConnection(jdbcConn, SCHEMA);
-			}
-			else if (URL.contains("jdbc:derby:")) {
-				dbunitConn = new DatabaseConnection(jdbcConn, SCHEMA);
-				dbunitConn.getConfig().setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, new DefaultDataTypeFactory());
-			}
-			else {
-				throw new IllegalStateException("Die Datenbank-URL " + URL + " wird nicht unterstuetzt");
-			}
+	private static void reloadWithDbUnit(PooledConnection conn) throws Exception {
+		final IDatabaseConnection dbunitConn = conn.getDatabaseConnection();
 
-			final ClassLoader cl = Thread.currentThread().getContextClassLoader();
-			final FlatXmlDataSetBuilder flatXmlDataSetBuilder = new FlatXmlDataSetBuilder();
-			flatXmlDataSetBuilder.setCaseSensitiveTableNames(caseSensitiveTableNames);
-			FlatXmlDataSet xmlDataset = flatXmlDataSetBuilder.build(cl.getResource(XML_FLAT_DATASET));
-			
-			DatabaseOperation dbOp = CLEAN_INSERT;
-			if (URL != null && URL.contains("sqlserver")) {
-				// Fuer SQL Server ist ein spezieller INSERT-Modus notwendig,
-				// damit IDENTITY-Spalten eingefuegt werden koennen
-				dbOp = InsertIdentityOperation.CLEAN_INSERT;
-			}
+		final FlatXmlDataSetBuilder flatXmlDataSetBuilder = new FlatXmlDataSetBuilder();
+		flatXmlDataSetBuilder.setCaseSensitiveTableNames(DIALECT.isCaseSensitiveTableNames());
+		FlatXmlDataSet xmlDataset = flatXmlDataSetBuilder.build(DbConfig.getXmlFlatDatasetResource());
 		
-			dbOp.execute(dbunitConn, xmlDataset);
-		}
-		finally {
-			if (dbunitConn != null)
-				dbunitConn.close();
-			
-			if (jdbcConn != null)
-				jdbcConn.close();
+		DatabaseOperation dbOp = CLEAN_INSERT;
+		if (DIALECT == DbDialect.SQLSERVER) {
+			// Fuer SQL Server ist ein spezieller INSERT-Modus notwendig,
+			// damit IDENTITY-Spalten eingefuegt werden koennen
+			dbOp = InsertIdentityOperation.CLEAN_INSERT;
 		}
-		
-		dbReloaded = true;
-		
-		System.out.println("Die Datenbank " + URL + " wurde neu geladen");
+	
+		dbOp.execute(dbunitConn, xmlDataset);
 	}
 	
 	/**
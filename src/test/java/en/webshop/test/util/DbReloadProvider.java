@@ -21,6 +21,8 @@ import org.slf4j.LoggerFactory;
 public abstract class DbReloadProvider {
 	private static final Logger LOGGER = LoggerFactory.getLogger(DbReloadProvider.class);
 	private static final String IMPL_CLASS = "en.webshop.test.util.DbReloadImpl";
+	// z.B. -Den.webshop.test.dbReload=en.webshop.test.util.DbSnapshotReloadImpl
+	private static final String IMPL_CLASS_PROPERTY = "en.webshop.test.dbReload";
 
 	/**
 	 */
@@ -44,7 +46,7 @@ public abstract class DbReloadProvider {
 		 * "Normaler" Classloader von z.B. Sun und *NICHT* von JBoss, d.h. Neuladen der DB
 		 * @return
 		 */
-		final Class<?> clazz = Class.forName(IMPL_CLASS);
+		final Class<?> clazz = Class.forName(System.getProperty(IMPL_CLASS_PROPERTY, IMPL_CLASS));
 		final Class<? extends DbReload> dbReloadImplClass = clazz.asSubclass(DbReload.class);
 		final DbReload dbReload = dbReloadImplClass.newInstance();
 		dbReload.reload();
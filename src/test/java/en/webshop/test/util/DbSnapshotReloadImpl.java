@@ -0,0 +1,117 @@
+package en.webshop.test.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Alternative zu DbReloadImpl: Die DB wird in dieser JVM nur beim ersten Aufruf
+ * komplett geladen. Danach wird von jeder Tabelle des Datasets eine Kopie als
+ * Snapshot-Tabelle angelegt (Praefix snapshotPrefix aus db.properties).
+ *
+ * Bei jedem weiteren Aufruf, d.h. vor jeder Testklasse, werden die Tabellen
+ * innerhalb der DB per INSERT ... SELECT aus den Snapshot-Tabellen wiederhergestellt.
+ * Dadurch ist jede Testklasse unabhaengig von den Aenderungen vorheriger Testklassen,
+ * ohne dass das Dataset erneut gelesen und eingefuegt werden muss.
+ *
+ * Aktivierung: -Den.webshop.test.dbReload=en.webshop.test.util.DbSnapshotReloadImpl
+ */
+public class DbSnapshotReloadImpl implements DbReload {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DbSnapshotReloadImpl.class);
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private static List<String> tables;
+
+	/**
+	 */
+	@Override
+	public void reload() throws Exception {
+		final long start = System.nanoTime();
+		final DbConnectionPool pool = DbConnectionPool.getInstance();
+		final PooledConnection conn = pool.borrow();
+		try {
+			if (DbConfig.getDialect() == DbDialect.SQLSERVER) {
+				/**
+				 * INSERT ... SELECT scheitert bei SQL Server an den IDENTITY-Spalten,
+				 * deshalb wird dort immer komplett neu geladen
+				 * @return
+				 */
+				DbReloadImpl.load(conn);
+			}
+			else if (tables == null) {
+				DbReloadImpl.load(conn);
+				final List<String> datasetTables =
+				      new FlatXmlStreamReader(DbConfig.getXmlFlatDatasetResource()).readTableNames();
+				capture(conn.getConnection(), datasetTables);
+				tables = datasetTables;
+			}
+			else {
+				restore(conn, tables);
+			}
+		}
+		finally {
+			pool.release(conn);
+		}
+
+		LOGGER.info("Die Datenbank " + DbConfig.getUrl() + " wurde in "
+		            + (System.nanoTime() - start) / NANOS_PER_MILLI + " ms zurueckgesetzt");
+	}
+
+	/**
+	 * Fuer jede Tabelle eine Snapshot-Tabelle anlegen und befuellen. Snapshot-Tabellen
+	 * eines frueheren Laufs werden vorher geloescht.
+	 */
+	private static void capture(Connection conn, List<String> datasetTables) throws SQLException {
+		final DbDialect dialect = DbConfig.getDialect();
+		conn.setAutoCommit(true);
+		final Statement stmt = conn.createStatement();
+		try {
+			for (String table : datasetTables) {
+				final String snapshot = snapshotName(table);
+				try {
+					stmt.executeUpdate("DROP TABLE " + snapshot);
+				}
+				catch (SQLException e) {
+					// Die Snapshot-Tabelle existiert noch nicht
+					LOGGER.debug("Keine alte Snapshot-Tabelle " + snapshot);
+				}
+				stmt.executeUpdate(dialect.createEmptyCopySql(snapshot, table));
+				stmt.executeUpdate("INSERT INTO " + snapshot + " SELECT * FROM " + table);
+			}
+		}
+		finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Die Tabellen in einer Transaktion aus den Snapshot-Tabellen wiederherstellen:
+	 * DELETE in umgekehrter und INSERT in der Reihenfolge des Datasets
+	 */
+	private static void restore(PooledConnection conn, List<String> datasetTables) throws SQLException {
+		final Connection jdbcConn = conn.getConnection();
+		jdbcConn.setAutoCommit(false);
+		try {
+			for (int i = datasetTables.size() - 1; i >= 0; i--) {
+				conn.prepare("DELETE FROM " + datasetTables.get(i)).executeUpdate();
+			}
+			for (String table : datasetTables) {
+				conn.prepare("INSERT INTO " + table + " SELECT * FROM " + snapshotName(table)).executeUpdate();
+			}
+			jdbcConn.commit();
+		}
+		catch (SQLException e) {
+			jdbcConn.rollback();
+			throw e;
+		}
+	}
+
+	private static String snapshotName(String table) {
+		return DbConfig.getSnapshotPrefix() + table;
+	}
+}
@@ -0,0 +1,109 @@
+package en.webshop.test.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Segmente aus einem Flat-XML-Dataset: Die Strings werden anhand der
+ * Spaltentypen aus den JDBC-Metadaten konvertiert.
+ */
+public class FlatXmlSegmentSource implements SegmentSource {
+	private final FlatXmlStreamReader reader;
+	private final Connection conn;
+	private final String schema;
+	private final int batchSize;
+
+	public FlatXmlSegmentSource(URL dataset, Connection conn, String schema, int batchSize) {
+		this.reader = new FlatXmlStreamReader(dataset);
+		this.conn = conn;
+		this.schema = schema;
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public List<String> getTableNames() throws IOException {
+		try {
+			return reader.readTableNames();
+		}
+		catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void read(Sink sink) throws IOException, SQLException {
+		final SegmentCollector collector = new SegmentCollector(sink);
+		try {
+			reader.read(collector);
+		}
+		catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+		collector.flush();
+	}
+
+	/**
+	 * Sammelt aufeinander folgende Zeilen mit gleicher Tabelle und gleichen Spalten
+	 * in Segmenten von hoechstens der Batch-Groesse
+	 */
+	private class SegmentCollector implements FlatXmlStreamReader.RowHandler {
+		private final Sink sink;
+		private List<Object[]> rows = new ArrayList<Object[]>();
+		private String table;
+		private String[] columns;
+		private int[] sqlTypes;
+
+		SegmentCollector(Sink sink) {
+			this.sink = sink;
+		}
+
+		@Override
+		public void row(String rowTable, String[] rowColumns, String[] values) throws SQLException {
+			// Ein Element ohne Attribute wie <complaint/> bedeutet bei DbUnit nur
+			// "Tabelle leeren": Der Name steht in getTableNames(), aber es gibt keine Zeile
+			if (rowColumns.length == 0) {
+				return;
+			}
+			if (!rowTable.equals(table) || !Arrays.equals(rowColumns, columns)) {
+				flush();
+				startSegment(rowTable, rowColumns);
+			}
+
+			final Object[] row = new Object[values.length];
+			for (int i = 0; i < values.length; i++) {
+				row[i] = TableMetadata.convert(sqlTypes[i], values[i]);
+			}
+			rows.add(row);
+
+			if (rows.size() >= batchSize) {
+				flush();
+			}
+		}
+
+		private void startSegment(String rowTable, String[] rowColumns) throws SQLException {
+			final TableMetadata tableMetadata = TableMetadata.get(conn, schema, rowTable);
+
+			table = rowTable;
+			columns = rowColumns;
+			sqlTypes = new int[rowColumns.length];
+			for (int i = 0; i < rowColumns.length; i++) {
+				sqlTypes[i] = tableMetadata.getSqlType(rowColumns[i]);
+			}
+		}
+
+		void flush() throws SQLException {
+			if (rows.isEmpty()) {
+				return;
+			}
+			sink.segment(new DataSegment(table, columns, sqlTypes, rows));
+			rows = new ArrayList<Object[]>();
+		}
+	}
+}
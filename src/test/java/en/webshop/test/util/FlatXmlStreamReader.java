@@ -0,0 +1,113 @@
+package en.webshop.test.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Liest eine Datei im Flat-XML-Format von DbUnit mit StAX, d.h. Zeile fuer Zeile
+ * und ohne das gesamte Dataset im Speicher aufzubauen.
+ * Jedes Element unterhalb von &lt;dataset&gt; ist eine Zeile, der Elementname
+ * ist der Tabellenname und die Attribute sind die Spalten. Ein Element ohne
+ * Attribute wird mit leeren Arrays uebergeben.
+ */
+public class FlatXmlStreamReader {
+	private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	private final URL url;
+
+	/**
+	 * Callback fuer jede gelesene Zeile
+	 */
+	public interface RowHandler {
+		void row(String table, String[] columns, String[] values) throws SQLException;
+	}
+
+	public FlatXmlStreamReader(URL url) {
+		if (url == null) {
+			throw new IllegalArgumentException("Das Flat-XML-Dataset wurde nicht gefunden");
+		}
+		this.url = url;
+	}
+
+	/**
+	 * Die Tabellennamen in der Reihenfolge ihres ersten Auftretens lesen
+	 */
+	public List<String> readTableNames() throws IOException, XMLStreamException {
+		final Set<String> tables = new LinkedHashSet<String>();
+		final InputStream inputStream = url.openStream();
+		try {
+			final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+			try {
+				int depth = 0;
+				while (reader.hasNext()) {
+					final int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						depth++;
+						if (depth == 2) {
+							tables.add(reader.getLocalName());
+						}
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT) {
+						depth--;
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		finally {
+			inputStream.close();
+		}
+		return new ArrayList<String>(tables);
+	}
+
+	/**
+	 * Alle Zeilen lesen und an den RowHandler uebergeben
+	 */
+	public void read(RowHandler handler) throws IOException, XMLStreamException, SQLException {
+		final InputStream inputStream = url.openStream();
+		try {
+			final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+			try {
+				int depth = 0;
+				while (reader.hasNext()) {
+					final int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						depth++;
+						if (depth == 2) {
+							final int count = reader.getAttributeCount();
+							final String[] columns = new String[count];
+							final String[] values = new String[count];
+							for (int i = 0; i < count; i++) {
+								columns[i] = reader.getAttributeLocalName(i);
+								values[i] = reader.getAttributeValue(i);
+							}
+							handler.row(reader.getLocalName(), columns, values);
+						}
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT) {
+						depth--;
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		finally {
+			inputStream.close();
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package en.webshop.test.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Obergrenzen fuer die JDBC-Zugriffe einer Testmethode, die von JdbcStatisticsRule
+ * geprueft werden. Ein negativer Wert bedeutet: keine Obergrenze.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface JdbcLimit {
+	/**
+	 * Maximale Anzahl ausgefuehrter Anweisungen
+	 */
+	int statements() default -1;
+
+	/**
+	 * Maximale Anzahl gelesener Zeilen
+	 */
+	long rows() default -1;
+
+	/**
+	 * Maximale Zeit in Millisekunden fuer alle Anweisungen
+	 */
+	long millis() default -1;
+}
@@ -0,0 +1,83 @@
+package en.webshop.test.util;
+
+/**
+ * Zaehler fuer die Anweisungen, gelesenen Zeilen und die JDBC-Zeit, die
+ * CountingDriver pro Thread erfasst. Die Session Beans werden in den Tests lokal
+ * im Thread der Testmethode aufgerufen, d.h. die Zaehler gehoeren zur Testmethode.
+ */
+public final class JdbcStatistics {
+	private static final ThreadLocal<Counter> COUNTER = new ThreadLocal<Counter>() {
+		@Override
+		protected Counter initialValue() {
+			return new Counter();
+		}
+	};
+
+	private static volatile boolean active;
+
+	private JdbcStatistics() {
+	}
+
+	/**
+	 * true, sobald CountingDriver eine Verbindung geoeffnet hat
+	 */
+	public static boolean isActive() {
+		return active;
+	}
+
+	static void activate() {
+		active = true;
+	}
+
+	/**
+	 * Nur fuer die Unit-Tests, die den Zustand ohne CountingDriver pruefen
+	 */
+	static void deactivate() {
+		active = false;
+		COUNTER.remove();
+	}
+
+	static void statement(long nanos) {
+		final Counter counter = COUNTER.get();
+		counter.statements++;
+		counter.nanos += nanos;
+	}
+
+	static void row() {
+		COUNTER.get().rows++;
+	}
+
+	/**
+	 * Die bisherigen Zaehler des aktuellen Threads, danach beginnt die Zaehlung neu
+	 */
+	public static Counter reset() {
+		final Counter counter = COUNTER.get();
+		COUNTER.set(new Counter());
+		return counter;
+	}
+
+	public static final class Counter {
+		private static final long NANOS_PER_MILLI = 1000000L;
+
+		private int statements;
+		private long rows;
+		private long nanos;
+
+		public int getStatements() {
+			return statements;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		public long getMillis() {
+			return nanos / NANOS_PER_MILLI;
+		}
+
+		@Override
+		public String toString() {
+			return statements + " Anweisungen, " + rows + " Zeilen, " + getMillis() + " ms";
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package en.webshop.test.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.junit.rules.MethodRule;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JUnit-Rule, die pro Testmethode die JDBC-Zugriffe aus CountingDriver in einen
+ * Report schreibt und die Obergrenzen aus &#64;JdbcLimit prueft, z.B.
+ * &#64;JdbcLimit(statements = 2). Die Obergrenzen sollten aus dem Report eines
+ * tatsaechlichen Laufs stammen.
+ *
+ * Gezaehlt wird die ganze Testmethode einschliesslich &#64;Before und &#64;After,
+ * d.h. auch z.B. das Login. Mit reset() direkt vor dem Aufruf der Session Bean
+ * beginnt die Zaehlung neu.
+ *
+ * Arquillian wendet die Rule auch im Client an, wo die Testmethode nur an JBoss
+ * weitergereicht wird. Dort wird nichts gezaehlt und nichts geprueft. Ist
+ * CountingDriver im JBoss nicht installiert oder hat er noch keine Verbindung
+ * geoeffnet, wird die Testmethode ohne Pruefung ausgefuehrt und fuer &#64;JdbcLimit
+ * eine Warnung protokolliert. Mit -Den.webshop.test.jdbcLimitRequired=true in den
+ * JVM-Optionen von JBoss schlaegt die Testmethode dann fehl.
+ *
+ * Der Report wird im JBoss an die Datei aus -Den.webshop.test.jdbcReport angehaengt,
+ * sonst an jdbc-report.txt im Log-Verzeichnis des Servers neben server.log.
+ */
+public class JdbcStatisticsRule implements MethodRule {
+	private static final Logger LOGGER = LoggerFactory.getLogger(JdbcStatisticsRule.class);
+
+	private static final String STATISTICS_CLASS = "en.webshop.test.util.JdbcStatistics";
+	private static final String REPORT_PROPERTY = "en.webshop.test.jdbcReport";
+	private static final String REPORT_NAME = "jdbc-report.txt";
+	private static final String LOG_DIR_PROPERTY = "jboss.server.log.dir";
+	private static final String JBOSS_CLASS_LOADER = "org.jboss";
+	private static final String REQUIRED_PROPERTY = "en.webshop.test.jdbcLimitRequired";
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	// JdbcStatistics wird erst nach dieser Pruefung geladen
+	private static final boolean AVAILABLE = isAvailable();
+
+	private static boolean reportLogged;
+
+	private final boolean container;
+
+	public JdbcStatisticsRule() {
+		this(isContainer());
+	}
+
+	/**
+	 * @param container true, falls die Testmethode in diesem Thread tatsaechlich
+	 *                  ausgefuehrt wird, d.h. im JBoss
+	 */
+	JdbcStatisticsRule(boolean container) {
+		this.container = container;
+	}
+
+	@Override
+	public Statement apply(final Statement base, final FrameworkMethod method, final Object target) {
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				final String name = target.getClass().getSimpleName() + "." + method.getName();
+				if (!container || !isActive()) {
+					if (container) {
+						inactive(name, method.getAnnotation(JdbcLimit.class));
+					}
+					base.evaluate();
+					return;
+				}
+
+				JdbcStatistics.reset();
+				base.evaluate();
+				final JdbcStatistics.Counter counter = JdbcStatistics.reset();
+
+				LOGGER.info(name + ": " + counter);
+				report(name, counter);
+				check(name, counter, method.getAnnotation(JdbcLimit.class));
+			}
+		};
+	}
+
+	/**
+	 * Die bisherigen Zaehler der Testmethode verwerfen, z.B. fuer das Login in
+	 * &#64;Before. Ohne CountingDriver passiert nichts.
+	 */
+	public void reset() {
+		if (isActive()) {
+			JdbcStatistics.reset();
+		}
+	}
+
+	private static boolean isActive() {
+		return AVAILABLE && JdbcStatistics.isActive();
+	}
+
+	private static void inactive(String name, JdbcLimit limit) {
+		if (limit == null) {
+			return;
+		}
+		final String message = name + ": @JdbcLimit kann nicht geprueft werden, weil CountingDriver nicht aktiv ist";
+		if (Boolean.getBoolean(REQUIRED_PROPERTY)) {
+			throw new AssertionError(message);
+		}
+		LOGGER.warn(message);
+	}
+
+	private static void check(String name, JdbcStatistics.Counter counter, JdbcLimit limit) {
+		if (limit == null) {
+			return;
+		}
+		if (limit.statements() >= 0 && counter.getStatements() > limit.statements()) {
+			throw new AssertionError(name + ": " + counter.getStatements() + " statt hoechstens "
+			                         + limit.statements() + " Anweisungen");
+		}
+		if (limit.rows() >= 0 && counter.getRows() > limit.rows()) {
+			throw new AssertionError(name + ": " + counter.getRows() + " statt hoechstens " + limit.rows()
+			                         + " Zeilen");
+		}
+		if (limit.millis() >= 0 && counter.getMillis() > limit.millis()) {
+			throw new AssertionError(name + ": " + counter.getMillis() + " statt hoechstens " + limit.millis()
+			                         + " ms");
+		}
+	}
+
+	private static synchronized void report(String name, JdbcStatistics.Counter counter) {
+		final File file = reportFile();
+		if (!reportLogged) {
+			LOGGER.info("Der JDBC-Report wird an " + file + " angehaengt");
+			reportLogged = true;
+		}
+		final File dir = file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			LOGGER.warn("Das Verzeichnis " + dir + " kann nicht angelegt werden");
+			return;
+		}
+		try {
+			final Writer writer = new FileWriter(file, true);
+			try {
+				writer.write(name + "\t" + counter.getStatements() + "\t" + counter.getRows() + "\t"
+				             + counter.getMillis() + NEWLINE);
+			}
+			finally {
+				writer.close();
+			}
+		}
+		catch (IOException e) {
+			LOGGER.warn("Der Report " + file + " kann nicht geschrieben werden: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Absoluter Pfad, weil das Arbeitsverzeichnis von JBoss nicht das Projekt ist
+	 */
+	static File reportFile() {
+		final String path = System.getProperty(REPORT_PROPERTY);
+		if (path != null) {
+			return new File(path).getAbsoluteFile();
+		}
+		final String logDir = System.getProperty(LOG_DIR_PROPERTY);
+		return new File(logDir == null ? "target" : logDir, REPORT_NAME).getAbsoluteFile();
+	}
+
+	/**
+	 * Wie in DbReloadProvider: Im JBoss ist der Context-ClassLoader von JBoss
+	 */
+	private static boolean isContainer() {
+		final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return classLoader != null && classLoader.getClass().getName().startsWith(JBOSS_CLASS_LOADER);
+	}
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName(STATISTICS_CLASS, false, JdbcStatisticsRule.class.getClassLoader());
+			return true;
+		}
+		catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package en.webshop.test.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+/**
+ * JdbcStatisticsRule im Client und im JBoss, jeweils mit und ohne CountingDriver.
+ * Die Zaehler werden direkt ueber JdbcStatistics erhoeht.
+ */
+public class JdbcStatisticsRuleTest {
+	private static final String REQUIRED_PROPERTY = "en.webshop.test.jdbcLimitRequired";
+	private static final String REPORT_PROPERTY = "en.webshop.test.jdbcReport";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final JdbcStatisticsRule containerRule = new JdbcStatisticsRule(true);
+	private final JdbcStatisticsRule clientRule = new JdbcStatisticsRule(false);
+	private File report;
+	private int statements;
+	private boolean evaluated;
+
+	@Before
+	public void setReport() {
+		report = new File(folder.getRoot(), "jdbc-report.txt");
+		System.setProperty(REPORT_PROPERTY, report.getPath());
+	}
+
+	@After
+	public void clearProperties() {
+		System.clearProperty(REQUIRED_PROPERTY);
+		System.clearProperty(REPORT_PROPERTY);
+		JdbcStatistics.deactivate();
+	}
+
+	@Test
+	public void inactiveWithoutLimit() throws Throwable {
+		System.setProperty(REQUIRED_PROPERTY, "true");
+		evaluate(containerRule, "withoutLimit");
+		assertThat(evaluated, is(true));
+	}
+
+	@Test
+	public void inactiveWithLimit() throws Throwable {
+		evaluate(containerRule, "withLimit");
+		assertThat(evaluated, is(true));
+	}
+
+	@Test
+	public void inactiveWithLimitRequired() throws Throwable {
+		System.setProperty(REQUIRED_PROPERTY, "true");
+		try {
+			evaluate(containerRule, "withLimit");
+			fail();
+		}
+		catch (AssertionError e) {
+			assertThat(e.getMessage().startsWith("JdbcStatisticsRuleTest.withLimit: "), is(true));
+		}
+		assertThat(evaluated, is(false));
+	}
+
+	@Test
+	public void clientWithLimitRequired() throws Throwable {
+		// Im Client wird die Testmethode nur an JBoss weitergereicht
+		System.setProperty(REQUIRED_PROPERTY, "true");
+		statements = 2;
+		JdbcStatistics.activate();
+		evaluate(clientRule, "withLimit");
+		assertThat(evaluated, is(true));
+		assertThat(report.exists(), is(false));
+	}
+
+	@Test
+	public void activeWithinLimit() throws Throwable {
+		JdbcStatistics.activate();
+		statements = 1;
+		evaluate(containerRule, "withLimit");
+		assertThat(evaluated, is(true));
+		assertThat(readReport(), is("JdbcStatisticsRuleTest.withLimit\t1\t0\t0"));
+	}
+
+	@Test
+	public void activeAboveLimit() throws Throwable {
+		JdbcStatistics.activate();
+		statements = 2;
+		try {
+			evaluate(containerRule, "withLimit");
+			fail();
+		}
+		catch (AssertionError e) {
+			assertThat(e.getMessage(), is("JdbcStatisticsRuleTest.withLimit: 2 statt hoechstens 1 Anweisungen"));
+		}
+		assertThat(readReport(), is("JdbcStatisticsRuleTest.withLimit\t2\t0\t0"));
+	}
+
+	@Test
+	public void resetBeforeCall() throws Throwable {
+		JdbcStatistics.activate();
+		statements = 1;
+		JdbcStatistics.statement(0);
+		final JdbcStatisticsRule rule = containerRule;
+		rule.apply(new Statement() {
+			@Override
+			public void evaluate() {
+				// z.B. das Login in @Before
+				JdbcStatistics.statement(0);
+				JdbcStatistics.statement(0);
+				rule.reset();
+				JdbcStatistics.statement(0);
+				evaluated = true;
+			}
+		}, method("withLimit"), this).evaluate();
+		assertThat(evaluated, is(true));
+		assertThat(readReport(), is("JdbcStatisticsRuleTest.withLimit\t1\t0\t0"));
+	}
+
+	@Test
+	public void resetWithoutCountingDriver() {
+		containerRule.reset();
+		assertThat(JdbcStatistics.isActive(), is(false));
+	}
+
+	@Test
+	public void reportFile() {
+		assertThat(JdbcStatisticsRule.reportFile(), is(report.getAbsoluteFile()));
+		System.clearProperty(REPORT_PROPERTY);
+		assertThat(JdbcStatisticsRule.reportFile().isAbsolute(), is(true));
+	}
+
+	/**
+	 * Die Testmethode fuehrt statements Anweisungen aus
+	 */
+	private void evaluate(JdbcStatisticsRule rule, String methodName) throws Throwable {
+		rule.apply(new Statement() {
+			@Override
+			public void evaluate() {
+				for (int i = 0; i < statements; i++) {
+					JdbcStatistics.statement(0);
+				}
+				evaluated = true;
+			}
+		}, method(methodName), this).evaluate();
+	}
+
+	private FrameworkMethod method(String methodName) throws NoSuchMethodException {
+		return new FrameworkMethod(getClass().getDeclaredMethod(methodName));
+	}
+
+	private String readReport() throws IOException {
+		final BufferedReader reader = new BufferedReader(new FileReader(report));
+		try {
+			return reader.readLine();
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	public void withoutLimit() {
+	}
+
+	@JdbcLimit(statements = 1)
+	public void withLimit() {
+	}
+}
@@ -0,0 +1,315 @@
+package en.webshop.test.util;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Laedt ein kompiliertes Dataset parallel: Die Tabellen werden anhand der
+ * Fremdschluessel in umgekehrter topologischer Reihenfolge geleert. Danach wird
+ * jede Tabelle befuellt, sobald alle Tabellen, auf die sie verweist, fertig sind.
+ * Unabhaengige Tabellen werden dadurch gleichzeitig eingefuegt.
+ *
+ * Die Verbindung des Aufrufers wird fuer die DELETEs und als erste Verbindung fuer
+ * das Einfuegen benutzt. Weitere Verbindungen werden nur mit Timeout aus
+ * DbConnectionPool ausgeliehen; ist keine frei, wird mit weniger Threads geladen.
+ *
+ * Jede Tabelle wird in einer eigenen Transaktion eingefuegt, d.h. das Laden ist
+ * nicht atomar. Nach einem Fehler werden deshalb alle Tabellen wieder geleert und
+ * der Fehler wird weitergeworfen.
+ */
+public class ParallelDataLoader {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ParallelDataLoader.class);
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final long NANOS_PER_MILLI = 1000000L;
+	private static final long BORROW_TIMEOUT_MILLIS = 500;
+
+	private final BinaryDataSetReader source;
+	private final DbConnectionPool pool;
+	private final DbDialect dialect;
+	private final String schema;
+	private final int batchSize;
+	private final int parallelism;
+
+	public ParallelDataLoader(BinaryDataSetReader source, DbConnectionPool pool, DbDialect dialect, String schema,
+	                          int batchSize, int parallelism) {
+		this.source = source;
+		this.pool = pool;
+		this.dialect = dialect;
+		this.schema = schema;
+		this.batchSize = batchSize;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Alle Tabellen ueber die Verbindung des Aufrufers und zusaetzlich ausgeliehene
+	 * Verbindungen neu laden
+	 */
+	public void load(PooledConnection conn) throws SQLException, IOException {
+		final long start = System.nanoTime();
+		final List<String> tables = source.getTableNames();
+
+		final Connection jdbcConn = conn.getConnection();
+		final TableDependencyGraph graph = new TableDependencyGraph(tables, jdbcConn, schema);
+		final List<String> order = graph.topologicalOrder();
+		if (order == null) {
+			LOGGER.warn("Die Fremdschluessel bilden einen Zyklus, es wird sequentiell geladen");
+			new StreamingDataLoader(source, dialect, batchSize).load(conn);
+			return;
+		}
+
+		final boolean autoCommit = jdbcConn.getAutoCommit();
+		final List<PooledConnection> borrowed = borrow();
+		final BlockingQueue<PooledConnection> connections = new LinkedBlockingQueue<PooledConnection>(borrowed);
+		connections.add(conn);
+		final int threads = connections.size();
+		boolean deleted = false;
+		boolean loaded = false;
+		try {
+			deleteAll(jdbcConn, order);
+			deleted = true;
+			insertAll(graph, order, connections);
+			loaded = true;
+		}
+		finally {
+			for (PooledConnection pooledConn : borrowed) {
+				pool.release(pooledConn);
+			}
+			if (deleted && !loaded) {
+				clear(jdbcConn, order);
+			}
+			jdbcConn.setAutoCommit(autoCommit);
+		}
+
+		LOGGER.info(tables.size() + " Tabellen mit " + threads + " Threads in "
+		            + (System.nanoTime() - start) / NANOS_PER_MILLI + " ms geladen");
+	}
+
+	/**
+	 * Bis zu parallelism - 1 weitere Verbindungen, hoechstens so viele, wie neben der
+	 * Verbindung des Aufrufers im Pool moeglich sind
+	 */
+	private List<PooledConnection> borrow() throws SQLException {
+		final int max = Math.min(parallelism, pool.getMaxSize()) - 1;
+		final List<PooledConnection> borrowed = new ArrayList<PooledConnection>(Math.max(0, max));
+		try {
+			while (borrowed.size() < max) {
+				final PooledConnection pooledConn = pool.borrow(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				if (pooledConn == null) {
+					LOGGER.info("Keine weitere freie Verbindung, es wird mit " + (borrowed.size() + 1)
+					            + " Threads geladen");
+					break;
+				}
+				borrowed.add(pooledConn);
+			}
+		}
+		catch (SQLException e) {
+			for (PooledConnection pooledConn : borrowed) {
+				pool.release(pooledConn);
+			}
+			throw e;
+		}
+		return borrowed;
+	}
+
+	/**
+	 * DELETE in umgekehrter topologischer Reihenfolge, d.h. zuerst die verweisenden Tabellen
+	 */
+	private static void deleteAll(Connection conn, List<String> order) throws SQLException {
+		conn.setAutoCommit(false);
+		final Statement stmt = conn.createStatement();
+		try {
+			for (int i = order.size() - 1; i >= 0; i--) {
+				stmt.executeUpdate("DELETE FROM " + order.get(i));
+			}
+			conn.commit();
+		}
+		catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+		finally {
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Nach einem Fehler die bereits eingefuegten Tabellen wieder leeren, damit keine
+	 * teilweise befuellte DB zurueckbleibt. Der urspruengliche Fehler wird vom
+	 * Aufrufer weitergeworfen.
+	 */
+	private static void clear(Connection conn, List<String> order) {
+		LOGGER.error("Das parallele Laden ist fehlgeschlagen, alle Tabellen werden wieder geleert");
+		try {
+			deleteAll(conn, order);
+		}
+		catch (SQLException e) {
+			LOGGER.error("Die Tabellen konnten nicht geleert werden, die DB ist nur teilweise befuellt: "
+			             + e.getMessage());
+		}
+	}
+
+	/**
+	 * Jede Tabelle wird gestartet, sobald alle Tabellen, auf die sie verweist,
+	 * eingefuegt sind. Es gibt genau so viele Threads wie Verbindungen.
+	 */
+	private void insertAll(TableDependencyGraph graph, List<String> order,
+	                       BlockingQueue<PooledConnection> connections) throws SQLException {
+		final Map<String, Integer> pendingParents = new HashMap<String, Integer>();
+		for (String table : order) {
+			pendingParents.put(table, graph.getParents(table).size());
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(connections.size());
+		final CompletionService<String> completion = new ExecutorCompletionService<String>(executor);
+		try {
+			final Set<String> started = new HashSet<String>();
+			int running = 0;
+			for (String table : order) {
+				if (pendingParents.get(table) == 0) {
+					completion.submit(new InsertTask(table, connections));
+					started.add(table);
+					running++;
+				}
+			}
+
+			while (running > 0) {
+				final String done = completed(completion);
+				running--;
+				for (String child : graph.getChildren(done)) {
+					final int pending = pendingParents.get(child) - 1;
+					pendingParents.put(child, pending);
+					if (pending == 0 && started.add(child)) {
+						completion.submit(new InsertTask(child, connections));
+						running++;
+					}
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+			awaitTermination(executor);
+		}
+	}
+
+	private static String completed(CompletionService<String> completion) throws SQLException {
+		try {
+			return completion.take().get();
+		}
+		catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw new SQLException("Das parallele Laden ist fehlgeschlagen", cause);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Das parallele Laden wurde unterbrochen", e);
+		}
+	}
+
+	/**
+	 * Laufende Tasks beenden ihre Tabelle, bevor die Verbindungen zurueckgegeben
+	 * oder die Tabellen wieder geleert werden
+	 */
+	private static void awaitTermination(ExecutorService executor) {
+		boolean interrupted = false;
+		for (;;) {
+			try {
+				if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+					break;
+				}
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Alle Segmente einer Tabelle auf einer freien Verbindung einfuegen
+	 */
+	private class InsertTask implements Callable<String> {
+		private final String table;
+		private final BlockingQueue<PooledConnection> connections;
+
+		InsertTask(String table, BlockingQueue<PooledConnection> connections) {
+			this.table = table;
+			this.connections = connections;
+		}
+
+		@Override
+		public String call() throws SQLException, IOException, InterruptedException {
+			final long start = System.nanoTime();
+			final BulkInserter inserter = new BulkInserter(dialect, batchSize);
+			final int[] rows = new int[1];
+			final PooledConnection conn = connections.take();
+			boolean committed = false;
+			try {
+				conn.getConnection().setAutoCommit(false);
+				source.readTable(table, new SegmentSource.Sink() {
+					@Override
+					public void segment(DataSegment segment) throws SQLException {
+						inserter.insert(conn, segment.getTable(), segment.getColumns(), segment.getSqlTypes(),
+						                segment.getRows());
+						rows[0] += segment.getRows().size();
+					}
+				});
+				conn.getConnection().commit();
+				committed = true;
+			}
+			finally {
+				if (!committed) {
+					rollback(conn.getConnection());
+				}
+				connections.add(conn);
+			}
+
+			final long nanos = System.nanoTime() - start;
+			final long rowsPerSecond = nanos == 0 ? rows[0] : rows[0] * NANOS_PER_SECOND / nanos;
+			LOGGER.info(table + ": " + rows[0] + " Zeilen in " + nanos / NANOS_PER_MILLI + " ms ("
+			            + rowsPerSecond + " Zeilen/s)");
+			return table;
+		}
+	}
+
+	private static void rollback(Connection conn) {
+		try {
+			conn.rollback();
+		}
+		catch (SQLException e) {
+			LOGGER.error("Rollback fehlgeschlagen: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Die Parallelitaet fuer die Anzahl Prozessoren, begrenzt durch die Groesse des Pools
+	 */
+	public static int defaultParallelism(DbConnectionPool pool) {
+		return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), pool.getMaxSize()));
+	}
+}
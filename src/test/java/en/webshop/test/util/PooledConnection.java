@@ -0,0 +1,157 @@
+package en.webshop.test.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.datatype.DefaultDataTypeFactory;
+import org.dbunit.ext.db2.Db2Connection;
+import org.dbunit.ext.hsqldb.HsqldbConnection;
+import org.dbunit.ext.mssql.MsSqlConnection;
+import org.dbunit.ext.mysql.MySqlConnection;
+import org.dbunit.ext.oracle.OracleConnection;
+import org.dbunit.ext.postgresql.PostgresqlDataTypeFactory;
+
+/**
+ * Eine JDBC-Verbindung aus DbConnectionPool. Die PreparedStatements und die
+ * DbUnit-Verbindung bleiben mit der JDBC-Verbindung erhalten, d.h. auch die von
+ * DbUnit gelesenen Metadaten werden wiederverwendet.
+ */
+public class PooledConnection {
+	private static final int STATEMENT_CACHE_SIZE = 64;
+
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements;
+	private IDatabaseConnection databaseConnection;
+
+	PooledConnection(Connection connection) {
+		this.connection = connection;
+		this.statements = new LinkedHashMap<String, PreparedStatement>(STATEMENT_CACHE_SIZE, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= STATEMENT_CACHE_SIZE) {
+					return false;
+				}
+				closeQuietly(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Ein PreparedStatement aus dem Cache oder neu erzeugt. Das Statement darf vom
+	 * Aufrufer nicht geschlossen werden.
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = statements.get(sql);
+		if (stmt == null) {
+			stmt = connection.prepareStatement(sql);
+			statements.put(sql, stmt);
+		}
+		return stmt;
+	}
+
+	/**
+	 * Die DbUnit-Verbindung passend zur Datenbank, z.B. fuer CLEAN_INSERT
+	 * oder fuer den Vergleich mit einem erwarteten Dataset
+	 */
+	public IDatabaseConnection getDatabaseConnection() {
+		if (databaseConnection == null) {
+			databaseConnection = createDatabaseConnection();
+		}
+		return databaseConnection;
+	}
+
+	private IDatabaseConnection createDatabaseConnection() {
+		final String schema = DbConfig.getSchema();
+		IDatabaseConnection dbunitConn;
+		switch (DbConfig.getDialect()) {
+			case POSTGRESQL:
+				dbunitConn = new DatabaseConnection(connection, schema);
+				dbunitConn.getConfig().setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY,
+				                                   new PostgresqlDataTypeFactory());
+				break;
+			case MYSQL:
+				dbunitConn = new MySqlConnection(connection, null);
+				break;
+			case ORACLE:
+				dbunitConn = new OracleConnection(connection, schema);
+				break;
+			case SQLSERVER:
+				dbunitConn = new MsSqlConnection(connection, schema);
+				break;
+			case DB2:
+				dbunitConn = new Db2Connection(connection, schema);
+				break;
+			case HSQLDB:
+				dbunitConn = new HsqldbConnection(connection, schema);
+				break;
+			case DERBY:
+				dbunitConn = new DatabaseConnection(connection, schema);
+				dbunitConn.getConfig().setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY,
+				                                   new DefaultDataTypeFactory());
+				break;
+			default:
+				throw new IllegalStateException("Die Datenbank-URL " + DbConfig.getUrl() + " wird nicht unterstuetzt");
+		}
+		return dbunitConn;
+	}
+
+	/**
+	 * Den Zustand fuer den naechsten Benutzer zuruecksetzen
+	 */
+	void reset() throws SQLException {
+		if (!connection.getAutoCommit()) {
+			connection.rollback();
+			connection.setAutoCommit(true);
+		}
+	}
+
+	boolean isClosed() {
+		try {
+			return connection.isClosed();
+		}
+		catch (SQLException e) {
+			return true;
+		}
+	}
+
+	void close() {
+		final Iterator<PreparedStatement> iter = statements.values().iterator();
+		while (iter.hasNext()) {
+			closeQuietly(iter.next());
+			iter.remove();
+		}
+		try {
+			// schliesst bei DbUnit auch die JDBC-Verbindung
+			if (databaseConnection != null) {
+				databaseConnection.close();
+			}
+			connection.close();
+		}
+		catch (SQLException e) {
+			// beim Schliessen nicht mehr relevant
+		}
+	}
+
+	private static void closeQuietly(PreparedStatement stmt) {
+		try {
+			stmt.close();
+		}
+		catch (SQLException e) {
+			// beim Schliessen nicht mehr relevant
+		}
+	}
+}
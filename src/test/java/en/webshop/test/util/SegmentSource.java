@@ -0,0 +1,25 @@
+package en.webshop.test.util;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Quelle fuer die Zeilen eines Datasets, die in Segmenten von hoechstens
+ * der Batch-Groesse geliefert werden
+ */
+public interface SegmentSource {
+	/**
+	 * Callback fuer jedes gelesene Segment
+	 */
+	interface Sink {
+		void segment(DataSegment segment) throws SQLException;
+	}
+
+	/**
+	 * Die Tabellennamen in der Reihenfolge ihres ersten Auftretens
+	 */
+	List<String> getTableNames() throws IOException;
+
+	void read(Sink sink) throws IOException, SQLException;
+}
@@ -0,0 +1,128 @@
+package en.webshop.test.util;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ersatz fuer DatabaseOperation.CLEAN_INSERT von DbUnit: Die Segmente einer
+ * SegmentSource (Flat-XML per StAX oder vorkompiliertes Binaerformat) werden
+ * gestreamt, die Tabellen werden in umgekehrter Reihenfolge geleert und die Zeilen
+ * pro Tabelle gebuendelt eingefuegt.
+ * Pro Tabelle werden die eingefuegten Zeilen pro Sekunde protokolliert.
+ */
+public class StreamingDataLoader {
+	private static final Logger LOGGER = LoggerFactory.getLogger(StreamingDataLoader.class);
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private final SegmentSource source;
+	private final BulkInserter inserter;
+
+	public StreamingDataLoader(SegmentSource source, DbDialect dialect, int batchSize) {
+		this.source = source;
+		this.inserter = new BulkInserter(dialect, batchSize);
+	}
+
+	/**
+	 * Alle Tabellen des Datasets leeren und neu befuellen. Es wird eine einzige
+	 * Transaktion verwendet.
+	 */
+	public void load(final PooledConnection conn) throws SQLException, IOException {
+		final Connection jdbcConn = conn.getConnection();
+		final boolean autoCommit = jdbcConn.getAutoCommit();
+		jdbcConn.setAutoCommit(false);
+		boolean committed = false;
+		try {
+			final List<String> tables = source.getTableNames();
+			deleteAll(jdbcConn, tables);
+
+			final Map<String, TableStatistics> statistics = new LinkedHashMap<String, TableStatistics>();
+			source.read(new SegmentSource.Sink() {
+				@Override
+				public void segment(DataSegment segment) throws SQLException {
+					final long start = System.nanoTime();
+					inserter.insert(conn, segment.getTable(), segment.getColumns(), segment.getSqlTypes(),
+					                segment.getRows());
+					final long nanos = System.nanoTime() - start;
+
+					TableStatistics tableStatistics = statistics.get(segment.getTable());
+					if (tableStatistics == null) {
+						tableStatistics = new TableStatistics();
+						statistics.put(segment.getTable(), tableStatistics);
+					}
+					tableStatistics.rows += segment.getRows().size();
+					tableStatistics.nanos += nanos;
+				}
+			});
+
+			jdbcConn.commit();
+			committed = true;
+			logStatistics(statistics);
+		}
+		finally {
+			// Bei jedem Fehler, auch IOException oder RuntimeException, zuerst zuruecksetzen:
+			// setAutoCommit(true) wuerde sonst die DELETEs committen
+			// Schlaegt auch das Rollback fehl, bleibt Autocommit aus und
+			// PooledConnection.reset() versucht es bei der Rueckgabe erneut
+			if (committed || rollback(jdbcConn)) {
+				jdbcConn.setAutoCommit(autoCommit);
+			}
+		}
+	}
+
+	/**
+	 * Ein Fehler beim Rollback wird nur protokolliert, damit die urspruengliche
+	 * Exception erhalten bleibt
+	 * @return false, falls das Rollback fehlgeschlagen ist
+	 */
+	private static boolean rollback(Connection conn) {
+		try {
+			conn.rollback();
+			return true;
+		}
+		catch (SQLException e) {
+			LOGGER.error("Das Rollback ist fehlgeschlagen", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Wie bei CLEAN_INSERT: DELETE in umgekehrter Reihenfolge des Datasets
+	 */
+	private static void deleteAll(Connection conn, List<String> tables) throws SQLException {
+		final Statement stmt = conn.createStatement();
+		try {
+			for (int i = tables.size() - 1; i >= 0; i--) {
+				stmt.executeUpdate("DELETE FROM " + tables.get(i));
+			}
+		}
+		finally {
+			stmt.close();
+		}
+	}
+
+	private static void logStatistics(Map<String, TableStatistics> statistics) {
+		for (Map.Entry<String, TableStatistics> entry : statistics.entrySet()) {
+			final TableStatistics tableStatistics = entry.getValue();
+			final long rowsPerSecond = tableStatistics.nanos == 0
+			                           ? tableStatistics.rows
+			                           : tableStatistics.rows * NANOS_PER_SECOND / tableStatistics.nanos;
+			LOGGER.info(entry.getKey() + ": " + tableStatistics.rows + " Zeilen in "
+			            + tableStatistics.nanos / NANOS_PER_MILLI + " ms (" + rowsPerSecond + " Zeilen/s)");
+		}
+	}
+
+	private static class TableStatistics {
+		private long rows;
+		private long nanos;
+	}
+}
@@ -0,0 +1,179 @@
+package en.webshop.test.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Die Transaktion von StreamingDataLoader mit einer Verbindung als Proxy, die
+ * alle Aufrufe protokolliert: Nach jedem Fehler muss vor dem Wiederherstellen von
+ * Autocommit ein Rollback erfolgen, sonst waeren die DELETEs committet.
+ */
+public class StreamingDataLoaderTest {
+	private static final List<String> TABLES = Arrays.asList("a", "b");
+	private static final int BATCH_SIZE = 10;
+
+	private final List<String> calls = new ArrayList<String>();
+	private PooledConnection conn;
+
+	@Before
+	public void createConnection() {
+		conn = new PooledConnection(connection());
+	}
+
+	@Test
+	public void commit() throws SQLException, IOException {
+		load(new TestSource(null));
+		assertThat(calls, is(Arrays.asList("autocommit=false", "DELETE FROM b", "DELETE FROM a", "insert a",
+		                                   "commit", "autocommit=true")));
+	}
+
+	@Test
+	public void rollbackAfterRuntimeException() throws SQLException, IOException {
+		final RuntimeException error = new NumberFormatException("x");
+		try {
+			load(new TestSource(error));
+			fail();
+		}
+		catch (NumberFormatException e) {
+			assertThat(e, is((Object) error));
+		}
+		assertRolledBack();
+	}
+
+	@Test
+	public void rollbackAfterIOException() throws SQLException {
+		final IOException error = new IOException("x");
+		try {
+			load(new TestSource(error));
+			fail();
+		}
+		catch (IOException e) {
+			assertThat(e, is((Object) error));
+		}
+		assertRolledBack();
+	}
+
+	@Test
+	public void rollbackAfterSQLException() throws IOException {
+		final SQLException error = new SQLException("x");
+		try {
+			load(new TestSource(error));
+			fail();
+		}
+		catch (SQLException e) {
+			assertThat(e, is((Object) error));
+		}
+		assertRolledBack();
+	}
+
+	private void load(SegmentSource source) throws SQLException, IOException {
+		new StreamingDataLoader(source, DbDialect.HSQLDB, BATCH_SIZE).load(conn);
+	}
+
+	private void assertRolledBack() {
+		assertThat(calls, is(Arrays.asList("autocommit=false", "DELETE FROM b", "DELETE FROM a", "insert a",
+		                                   "rollback", "autocommit=true")));
+	}
+
+	/**
+	 * Liefert ein Segment fuer Tabelle a und wirft danach den Fehler, falls vorhanden
+	 */
+	private static class TestSource implements SegmentSource {
+		private final Exception error;
+
+		TestSource(Exception error) {
+			this.error = error;
+		}
+
+		@Override
+		public List<String> getTableNames() {
+			return TABLES;
+		}
+
+		@Override
+		public void read(Sink sink) throws IOException, SQLException {
+			final List<Object[]> rows = Collections.singletonList(new Object[] {1 });
+			sink.segment(new DataSegment("a", new String[] {"id" }, new int[] {Types.INTEGER }, rows));
+			if (error instanceof IOException) {
+				throw (IOException) error;
+			}
+			if (error instanceof SQLException) {
+				throw (SQLException) error;
+			}
+			if (error != null) {
+				throw (RuntimeException) error;
+			}
+		}
+	}
+
+	private Connection connection() {
+		return proxy(Connection.class, new InvocationHandler() {
+			private boolean autoCommit = true;
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				final String name = method.getName();
+				if ("getAutoCommit".equals(name)) {
+					return autoCommit;
+				}
+				if ("setAutoCommit".equals(name)) {
+					autoCommit = (Boolean) args[0];
+					calls.add("autocommit=" + autoCommit);
+					return null;
+				}
+				if ("commit".equals(name) || "rollback".equals(name)) {
+					calls.add(name);
+					return null;
+				}
+				if ("createStatement".equals(name)) {
+					return statement(Statement.class);
+				}
+				if ("prepareStatement".equals(name)) {
+					return statement(PreparedStatement.class);
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	private <T extends Statement> T statement(Class<T> type) {
+		return proxy(type, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				final String name = method.getName();
+				if ("executeUpdate".equals(name)) {
+					calls.add((String) args[0]);
+					return 0;
+				}
+				if ("executeBatch".equals(name)) {
+					calls.add("insert a");
+					return new int[0];
+				}
+				return null;
+			}
+		});
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(StreamingDataLoaderTest.class.getClassLoader(),
+		                                        new Class<?>[] {type}, handler));
+	}
+}
@@ -0,0 +1,73 @@
+package en.webshop.test.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+
+import org.jboss.arquillian.junit.Arquillian;
+import org.junit.runners.model.InitializationError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JUnit-Runner fuer die Testklassen: Arquillian laedt genau einen DeployableContainer
+ * ueber META-INF/services des Context-ClassLoaders. Dieser Runner setzt beim ersten
+ * Aufruf einen ClassLoader, der fuer diesen Service nur META-INF/suite liefert, d.h.
+ * SuiteDeployableContainer statt des Remote-Containers, den SuiteDeployableContainer
+ * selbst erzeugt. Alle anderen Klassen und Ressourcen kommen unveraendert vom
+ * bisherigen ClassLoader.
+ *
+ * Mit -Den.webshop.test.suiteDeployment=false bleibt der ClassLoader unveraendert
+ * und der Remote-Container wird direkt benutzt. Im JBoss wird ebenfalls nichts
+ * veraendert.
+ */
+public class SuiteArquillian extends Arquillian {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SuiteArquillian.class);
+
+	private static final String ENABLED_PROPERTY = "en.webshop.test.suiteDeployment";
+	private static final String SERVICE = "META-INF/services/org.jboss.arquillian.spi.DeployableContainer";
+	private static final String SUITE_SERVICE = "META-INF/suite/org.jboss.arquillian.spi.DeployableContainer";
+
+	private static boolean installed;
+
+	public SuiteArquillian(Class<?> klass) throws InitializationError {
+		super(install(klass));
+	}
+
+	private static synchronized Class<?> install(Class<?> klass) {
+		if (installed || !Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) {
+			return klass;
+		}
+
+		final Thread thread = Thread.currentThread();
+		final ClassLoader classLoader = thread.getContextClassLoader();
+		if (classLoader.getClass().getName().startsWith("org.jboss")) {
+			// Im JBoss wird kein Container geladen
+			return klass;
+		}
+
+		thread.setContextClassLoader(new SuiteClassLoader(classLoader));
+		installed = true;
+		LOGGER.info("Das Archiv wird fuer alle Testklassen nur einmal deployt");
+		return klass;
+	}
+
+	/**
+	 * Ersetzt nur die Service-Datei fuer DeployableContainer
+	 */
+	private static class SuiteClassLoader extends ClassLoader {
+		SuiteClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		@Override
+		public URL getResource(String name) {
+			return super.getResource(SERVICE.equals(name) ? SUITE_SERVICE : name);
+		}
+
+		@Override
+		public Enumeration<URL> getResources(String name) throws IOException {
+			return super.getResources(SERVICE.equals(name) ? SUITE_SERVICE : name);
+		}
+	}
+}
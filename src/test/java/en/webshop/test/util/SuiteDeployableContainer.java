@@ -0,0 +1,101 @@
+package en.webshop.test.util;
+
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.DeploymentException;
+import org.jboss.arquillian.spi.LifecycleException;
+import org.jboss.arquillian.spi.TestClass;
+import org.jboss.shrinkwrap.api.Archive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Container fuer Arquillian, der an den Remote-Container fuer JBoss 6 delegiert,
+ * aber jedes Archiv nur einmal pro Suite deployt: Alle Testklassen, deren
+ * &#64;Deployment-Methode ArchiveUtil.getTestArchive() liefert, laufen gegen dasselbe
+ * test.ear. Undeployt wird erst, wenn der Container am Ende der Suite gestoppt wird.
+ *
+ * Arquillian akzeptiert nur einen DeployableContainer im Classpath. Dieser Container
+ * ist deshalb nur in META-INF/suite eingetragen und wird ueber den Runner
+ * SuiteArquillian ausgewaehlt. Den Remote-Container erzeugt er selbst.
+ */
+public class SuiteDeployableContainer implements DeployableContainer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SuiteDeployableContainer.class);
+
+	private static final String DELEGATE_CLASS =
+	                            "org.jboss.arquillian.container.jbossas.remote_6.JBossASRemoteContainer";
+
+	private final DeployableContainer delegate;
+
+	public SuiteDeployableContainer() {
+		try {
+			final Class<?> clazz = Class.forName(DELEGATE_CLASS);
+			delegate = clazz.asSubclass(DeployableContainer.class).newInstance();
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (InstantiationException e) {
+			throw new IllegalStateException(e);
+		}
+		catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void setup(Context context, Configuration configuration) {
+		delegate.setup(context, configuration);
+	}
+
+	@Override
+	public void start(Context context) throws LifecycleException {
+		delegate.start(context);
+	}
+
+	@Override
+	public ContainerMethodExecutor deploy(Context context, Archive<?> archive) throws DeploymentException {
+		final String testClass = testClassName(context);
+		final ContainerMethodExecutor deployed = SuiteDeployment.acquire(archive, testClass);
+		if (deployed != null) {
+			LOGGER.info(archive.getName() + " ist bereits deployt, " + testClass + " wird wiederverwendet");
+			return deployed;
+		}
+
+		final ContainerMethodExecutor executor = delegate.deploy(context, archive);
+		SuiteDeployment.register(archive, testClass, executor);
+		return executor;
+	}
+
+	@Override
+	public void undeploy(Context context, Archive<?> archive) throws DeploymentException {
+		final int references = SuiteDeployment.release(archive);
+		LOGGER.debug(archive.getName() + " bleibt deployt, noch " + references + " Testklassen aktiv");
+	}
+
+	@Override
+	public void stop(Context context) throws LifecycleException {
+		try {
+			// Alle Archive undeployen, auch wenn eine Testklasse nicht beendet wurde,
+			// sonst schlaegt das Deployment beim naechsten Lauf fehl
+			for (Archive<?> archive : SuiteDeployment.removeAll()) {
+				try {
+					delegate.undeploy(context, archive);
+				}
+				catch (DeploymentException e) {
+					LOGGER.warn(archive.getName() + " kann nicht undeployt werden: " + e.getMessage());
+				}
+			}
+		}
+		finally {
+			delegate.stop(context);
+		}
+	}
+
+	private static String testClassName(Context context) {
+		final TestClass testClass = context.get(TestClass.class);
+		return testClass == null ? "?" : testClass.getName();
+	}
+}
@@ -0,0 +1,103 @@
+package en.webshop.test.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.shrinkwrap.api.Archive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry fuer die Deployments, die von mehreren Testklassen gemeinsam benutzt
+ * werden: Pro Archiv werden der ContainerMethodExecutor, die Testklassen und die
+ * Anzahl der noch nicht beendeten Testklassen gespeichert.
+ */
+public final class SuiteDeployment {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SuiteDeployment.class);
+
+	private static final Map<String, Entry> DEPLOYMENTS = new HashMap<String, Entry>();
+
+	private SuiteDeployment() {
+	}
+
+	/**
+	 * Der ContainerMethodExecutor eines bereits deployten Archivs. Die Testklasse
+	 * wird registriert und der Referenzzaehler erhoeht.
+	 * @return null, falls das Archiv noch nicht deployt ist
+	 */
+	static synchronized ContainerMethodExecutor acquire(Archive<?> archive, String testClass) {
+		final Entry entry = DEPLOYMENTS.get(archive.getName());
+		if (entry == null) {
+			return null;
+		}
+		entry.testClasses.add(testClass);
+		entry.references++;
+		return entry.executor;
+	}
+
+	/**
+	 * Ein neu deploytes Archiv registrieren
+	 */
+	static synchronized void register(Archive<?> archive, String testClass, ContainerMethodExecutor executor) {
+		final Entry entry = new Entry(archive, executor);
+		entry.testClasses.add(testClass);
+		entry.references = 1;
+		DEPLOYMENTS.put(archive.getName(), entry);
+	}
+
+	/**
+	 * Eine Testklasse ist beendet, das Archiv bleibt bis zum Ende der Suite deployt
+	 * @return Anzahl der Testklassen, die das Archiv noch benutzen
+	 */
+	static synchronized int release(Archive<?> archive) {
+		final Entry entry = DEPLOYMENTS.get(archive.getName());
+		if (entry == null) {
+			return 0;
+		}
+		if (entry.references > 0) {
+			entry.references--;
+		}
+		return entry.references;
+	}
+
+	/**
+	 * Am Ende der Suite alle Archive austragen, damit sie undeployt werden koennen
+	 */
+	static synchronized List<Archive<?>> removeAll() {
+		final List<Archive<?>> archives = new ArrayList<Archive<?>>();
+		for (Entry entry : DEPLOYMENTS.values()) {
+			if (entry.references > 0) {
+				LOGGER.warn(entry.archive.getName() + " wird noch von " + entry.references
+				            + " Testklassen benutzt und trotzdem undeployt");
+			}
+			archives.add(entry.archive);
+		}
+		DEPLOYMENTS.clear();
+		return archives;
+	}
+
+	/**
+	 * Die Testklassen, die ein Archiv bisher benutzt haben
+	 */
+	public static synchronized Set<String> getTestClasses(String archiveName) {
+		final Entry entry = DEPLOYMENTS.get(archiveName);
+		return entry == null ? new LinkedHashSet<String>() : new LinkedHashSet<String>(entry.testClasses);
+	}
+
+	private static class Entry {
+		private final Archive<?> archive;
+		private final ContainerMethodExecutor executor;
+		private final Set<String> testClasses = new LinkedHashSet<String>();
+		private int references;
+
+		Entry(Archive<?> archive, ContainerMethodExecutor executor) {
+			this.archive = archive;
+			this.executor = executor;
+		}
+	}
+}
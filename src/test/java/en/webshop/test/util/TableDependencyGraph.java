@@ -0,0 +1,88 @@
+package en.webshop.test.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Die Abhaengigkeiten zwischen den Tabellen eines Datasets anhand der
+ * Fremdschluessel aus den JDBC-Metadaten. Verweise einer Tabelle auf sich
+ * selbst und auf Tabellen ausserhalb des Datasets werden ignoriert.
+ */
+public class TableDependencyGraph {
+	private final List<String> tables;
+	private final Map<String, Set<String>> parents = new HashMap<String, Set<String>>();
+	private final Map<String, Set<String>> children = new HashMap<String, Set<String>>();
+
+	public TableDependencyGraph(List<String> tables, Connection conn, String schema) throws SQLException {
+		this.tables = tables;
+
+		final Map<String, String> byUpperCase = new HashMap<String, String>();
+		for (String table : tables) {
+			byUpperCase.put(table.toUpperCase(Locale.ENGLISH), table);
+			parents.put(table, new LinkedHashSet<String>());
+			children.put(table, new LinkedHashSet<String>());
+		}
+
+		for (String table : tables) {
+			for (String referenced : TableMetadata.get(conn, schema, table).getReferencedTables()) {
+				final String parent = byUpperCase.get(referenced);
+				if (parent != null && !parent.equals(table)) {
+					parents.get(table).add(parent);
+					children.get(parent).add(table);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Die Tabellen, die vor dieser Tabelle befuellt sein muessen
+	 */
+	public Set<String> getParents(String table) {
+		return Collections.unmodifiableSet(parents.get(table));
+	}
+
+	/**
+	 * Die Tabellen, die auf diese Tabelle verweisen
+	 */
+	public Set<String> getChildren(String table) {
+		return Collections.unmodifiableSet(children.get(table));
+	}
+
+	/**
+	 * Topologische Sortierung: Jede Tabelle steht hinter allen Tabellen, auf die sie
+	 * verweist. Bei gleichem Rang bleibt die Reihenfolge des Datasets erhalten.
+	 * @return null, falls die Fremdschluessel einen Zyklus bilden
+	 */
+	public List<String> topologicalOrder() {
+		final Map<String, Integer> pending = new HashMap<String, Integer>();
+		for (String table : tables) {
+			pending.put(table, parents.get(table).size());
+		}
+
+		final List<String> order = new ArrayList<String>(tables.size());
+		boolean progress = true;
+		while (order.size() < tables.size() && progress) {
+			progress = false;
+			for (String table : tables) {
+				if (pending.get(table) == 0) {
+					pending.put(table, -1);
+					order.add(table);
+					for (String child : children.get(table)) {
+						pending.put(child, pending.get(child) - 1);
+					}
+					progress = true;
+				}
+			}
+		}
+
+		return order.size() == tables.size() ? order : null;
+	}
+}
@@ -0,0 +1,193 @@
+package en.webshop.test.util;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Spaltentypen einer Tabelle aus den JDBC-Metadaten und die Konvertierung
+ * der Strings aus dem Flat-XML-Dataset in die passenden Java-Typen
+ */
+public class TableMetadata {
+	// Die Metadaten aendern sich waehrend eines Testlaufs nicht
+	private static final ConcurrentMap<String, TableMetadata> CACHE = new ConcurrentHashMap<String, TableMetadata>();
+
+	private final String name;
+	private final Map<String, Integer> sqlTypes = new HashMap<String, Integer>();
+	private final List<String> primaryKeys = new ArrayList<String>();
+	private final Set<String> referencedTables = new HashSet<String>();
+
+	private TableMetadata(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Die Metadaten einer Tabelle aus dem Cache oder ueber die Verbindung gelesen
+	 */
+	public static TableMetadata get(Connection conn, String schema, String table) throws SQLException {
+		final String key = schema + "." + table;
+		TableMetadata tableMetadata = CACHE.get(key);
+		if (tableMetadata == null) {
+			tableMetadata = read(conn, schema, table);
+			CACHE.putIfAbsent(key, tableMetadata);
+		}
+		return tableMetadata;
+	}
+
+	/**
+	 * Die Metadaten einer Tabelle lesen. Der Tabellenname wird zuerst wie angegeben,
+	 * dann in Klein- und zuletzt in Grossbuchstaben gesucht.
+	 */
+	private static TableMetadata read(Connection conn, String schema, String table) throws SQLException {
+		final DatabaseMetaData metaData = conn.getMetaData();
+		final String[] candidates = { table, table.toLowerCase(Locale.ENGLISH), table.toUpperCase(Locale.ENGLISH) };
+		final String[] schemas = { schema, schema == null ? null : schema.toLowerCase(Locale.ENGLISH),
+		                           schema == null ? null : schema.toUpperCase(Locale.ENGLISH) };
+		for (int i = 0; i < candidates.length; i++) {
+			final TableMetadata tableMetadata = new TableMetadata(table);
+			final ResultSet rs = metaData.getColumns(null, schemas[i], candidates[i], null);
+			try {
+				while (rs.next()) {
+					tableMetadata.sqlTypes.put(rs.getString("COLUMN_NAME").toUpperCase(Locale.ENGLISH),
+					                           rs.getInt("DATA_TYPE"));
+				}
+			}
+			finally {
+				rs.close();
+			}
+			if (!tableMetadata.sqlTypes.isEmpty()) {
+				final ResultSet pk = metaData.getPrimaryKeys(null, schemas[i], candidates[i]);
+				try {
+					while (pk.next()) {
+						tableMetadata.primaryKeys.add(pk.getString("COLUMN_NAME"));
+					}
+				}
+				finally {
+					pk.close();
+				}
+
+				final ResultSet fk = metaData.getImportedKeys(null, schemas[i], candidates[i]);
+				try {
+					while (fk.next()) {
+						tableMetadata.referencedTables.add(fk.getString("PKTABLE_NAME").toUpperCase(Locale.ENGLISH));
+					}
+				}
+				finally {
+					fk.close();
+				}
+				return tableMetadata;
+			}
+		}
+		throw new IllegalStateException("Die Tabelle " + table + " wurde im Schema " + schema + " nicht gefunden");
+	}
+
+	/**
+	 * Alle Metadaten neu lesen, z.B. nach einer Aenderung am Schema
+	 */
+	static void clearCache() {
+		CACHE.clear();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Die Spalten des Primaerschluessels
+	 */
+	public List<String> getPrimaryKeys() {
+		return Collections.unmodifiableList(primaryKeys);
+	}
+
+	/**
+	 * Die Namen der Tabellen in Grossbuchstaben, auf die Fremdschluessel dieser Tabelle verweisen
+	 */
+	public Set<String> getReferencedTables() {
+		return Collections.unmodifiableSet(referencedTables);
+	}
+
+	/**
+	 * Die SQL-Typen aller Spalten, sortiert nach dem Spaltennamen in Grossbuchstaben
+	 */
+	public SortedMap<String, Integer> getSqlTypes() {
+		return Collections.unmodifiableSortedMap(new TreeMap<String, Integer>(sqlTypes));
+	}
+
+	/**
+	 * Der SQL-Typ gemaess java.sql.Types zu einer Spalte
+	 */
+	public int getSqlType(String column) {
+		final Integer sqlType = sqlTypes.get(column.toUpperCase(Locale.ENGLISH));
+		if (sqlType == null) {
+			throw new IllegalStateException("Die Spalte " + column + " existiert nicht in der Tabelle " + name);
+		}
+		return sqlType;
+	}
+
+	/**
+	 * Einen String aus dem Flat-XML-Dataset in den Java-Typ zum SQL-Typ konvertieren
+	 */
+	public static Object convert(int sqlType, String value) {
+		if (value == null) {
+			return null;
+		}
+
+		switch (sqlType) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return "1".equals(value) || "t".equalsIgnoreCase(value) || "true".equalsIgnoreCase(value)
+				       || "y".equalsIgnoreCase(value);
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return Integer.valueOf(value.trim());
+			case Types.BIGINT:
+				return Long.valueOf(value.trim());
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return Double.valueOf(value.trim());
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				return new BigDecimal(value.trim());
+			case Types.DATE:
+				return value.length() > "yyyy-mm-dd".length()
+				       ? new Date(Timestamp.valueOf(value).getTime())
+				       : Date.valueOf(value);
+			case Types.TIME:
+				return Time.valueOf(value);
+			case Types.TIMESTAMP:
+				return value.length() == "yyyy-mm-dd".length()
+				       ? Timestamp.valueOf(value + " 00:00:00")
+				       : Timestamp.valueOf(value);
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				// Binaerdaten sind bei DbUnit Base64-kodiert
+				return DatatypeConverter.parseBase64Binary(value);
+			default:
+				return value;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+#!/bin/sh
+# Installiert CountingDriver und JdbcStatistics im lib-Verzeichnis des JBoss und
+# die Datasource mit jdbc:counting: im deploy-Verzeichnis. Die Klassen muessen
+# vorher kompiliert sein (target/test-classes), der JBoss wird danach neu gestartet.
+#
+# Aufruf: src/test/jboss/install-counting-driver.sh [Konfiguration, default: default]
+
+set -e
+
+if [ -z "$JBOSS_HOME" ]; then
+	echo "JBOSS_HOME ist nicht gesetzt" >&2
+	exit 1
+fi
+
+BASEDIR=$(cd "$(dirname "$0")/../../.." && pwd)
+CLASSES="$BASEDIR/target/test-classes"
+SERVER="$JBOSS_HOME/server/${1:-default}"
+
+if [ ! -f "$CLASSES/en/webshop/test/util/CountingDriver.class" ]; then
+	echo "$CLASSES enthaelt CountingDriver nicht, zuerst die Tests kompilieren" >&2
+	exit 1
+fi
+
+# Nur die beiden Klassen, die restlichen Test-Utilities werden mit test.ear deployed
+cd "$CLASSES"
+jar cf "$SERVER/lib/webshop-counting-driver.jar" \
+	en/webshop/test/util/CountingDriver*.class \
+	en/webshop/test/util/JdbcStatistics*.class
+
+cp "$BASEDIR/src/test/jboss/webshop-counting-ds.xml" "$SERVER/deploy/"
+echo "CountingDriver in $SERVER installiert, JBoss neu starten"